@@ -1,6 +1,8 @@
 ;
 (function () {
-    if (window.WebViewJavascriptBridge) {
+    // document start scripts run in every frame, the bridge and its ready handshake belong to the
+    // main frame only, as when the script was evaluated after the page loaded
+    if (window.WebViewJavascriptBridge || window !== window.top) {
         return;
     }
     var messageHandlers = {};
@@ -8,14 +10,34 @@
     var uniqueId = 1;
     var dispatchMessagesWithTimeoutSafety = true;
     var random = 1;
+    // messages longer than this are sent to java in chunks, 0 when java does not take chunks
+    var chunkSize = window.WVJBInterface && WVJBInterface.chunkSize ? WVJBInterface.chunkSize() : 0;
+    var outgoingMessages = [];
+    var lastChunkId = 0;
+    var chunksFromJava = {};
+    // set when java delivers its messages over a web message channel instead of scripts
+    var javaPort = null;
 
     function _doSend(message, responseCallback) {
+        message = message || {};
         if (responseCallback) {
             var callbackId = 'cb_' + (uniqueId++) + '_' + new Date().getTime();
             responseCallbacks[callbackId] = responseCallback;
             message['callbackId'] = callbackId;
         }
-        var msg=JSON.stringify(message || {});
+        var msg=JSON.stringify(message);
+        // while a chunked message is on its way later messages wait behind it to keep their order
+        if (outgoingMessages.length || (chunkSize > 0 && msg.length > chunkSize)) {
+            outgoingMessages.push({msg: msg, offset: 0, id: 0, callbackId: message.callbackId});
+            if (outgoingMessages.length == 1) {
+                _sendOutgoingMessages();
+            }
+            return;
+        }
+        _notice(msg);
+    }
+
+    function _notice(msg) {
         if(window.WVJBInterface){
            WVJBInterface.notice(msg);
         }else{
@@ -23,6 +45,46 @@
         }
     }
 
+    // sends up to chunkSize characters per task so the page keeps running between chunks
+    function _sendOutgoingMessages() {
+        var sent = 0;
+        while (outgoingMessages.length && sent < chunkSize) {
+            var item = outgoingMessages[0];
+            if (item.offset == 0 && item.msg.length <= chunkSize) {
+                _notice(item.msg);
+                sent += item.msg.length;
+                outgoingMessages.shift();
+                continue;
+            }
+            if (!item.id) {
+                item.id = ++lastChunkId;
+            }
+            var end = Math.min(item.offset + chunkSize, item.msg.length);
+            // never split a surrogate pair, each half would be replaced on the way to java
+            var code = item.msg.charCodeAt(end - 1);
+            if (end < item.msg.length && end - 1 > item.offset && code >= 0xD800 && code <= 0xDBFF) {
+                end--;
+            }
+            var last = end == item.msg.length;
+            if (!WVJBInterface.noticeChunk(item.id, item.msg.substring(item.offset, end), last)) {
+                console.error("WebViewJavascriptBridge: ERROR: message dropped by java, too much data in flight");
+                if (item.callbackId) {
+                    delete responseCallbacks[item.callbackId];
+                }
+                outgoingMessages.shift();
+                continue;
+            }
+            sent += end - item.offset;
+            item.offset = end;
+            if (last) {
+                outgoingMessages.shift();
+            }
+        }
+        if (outgoingMessages.length) {
+            setTimeout(_sendOutgoingMessages, 0);
+        }
+    }
+
     var bridge = {
         registerHandler: function (handlerName, handler) {
             messageHandlers[handlerName] = handler;
@@ -42,17 +104,66 @@
             this.callHandler("_disableJavascriptAlertBoxSafetyTimeout", disable !== false)
         },
         _handleMessageFromJava: function (messageJSON) {
-            _dispatchMessageFromJava(messageJSON);
+            if (Array.isArray(messageJSON)) {
+                _dispatchMessagesFromJava(messageJSON);
+            } else {
+                _dispatchMessageFromJava(messageJSON);
+            }
+        },
+        _handleChunkFromJava: function (id, chunk, last) {
+            var chunks = chunksFromJava[id] || (chunksFromJava[id] = []);
+            chunks.push(chunk);
+            if (last) {
+                delete chunksFromJava[id];
+                this._handleMessageFromJava(JSON.parse(chunks.join('')));
+            }
         },
         hasNativeMethod: function (name, responseCallback) {
             this.callHandler('_hasNativeMethod', name, responseCallback);
         }
     };
 
+    // java posts the port without a source window, a port posted by another frame is ignored. A
+    // later port replaces the current one, java only posts one when it dropped the previous one.
+    window.addEventListener('message', function (event) {
+        if (event.data !== 'WVJBPort' || event.source || !event.ports || !event.ports.length) {
+            return;
+        }
+        if (javaPort) {
+            javaPort.onmessage = null;
+            javaPort.close();
+        }
+        javaPort = event.ports[0];
+        javaPort.onmessage = function (e) {
+            _handleDataFromJava(e.data);
+        };
+    });
+
+    // a message or array of messages as JSON, or a chunk of one behind a "~id:last:" header
+    function _handleDataFromJava(data) {
+        if (data.charAt(0) == '~') {
+            var idEnd = data.indexOf(':');
+            bridge._handleChunkFromJava(+data.substring(1, idEnd), data.substring(idEnd + 3), data.charAt(idEnd + 1) == '1');
+            return;
+        }
+        bridge._handleMessageFromJava(JSON.parse(data));
+    }
+
     bridge.registerHandler('_hasJavascriptMethod', function (data, responseCallback) {
         responseCallback(!!messageHandlers[data])
     })
 
+    // a batch is delivered in one call, so one failing handler must not drop the rest of it
+    function _dispatchMessagesFromJava(messages) {
+        for (var i = 0; i < messages.length; i++) {
+            try {
+                _dispatchMessageFromJava(messages[i]);
+            } catch (e) {
+                console.error("WebViewJavascriptBridge: ERROR: failed to dispatch message from java", messages[i], e);
+            }
+        }
+    }
+
     function _dispatchMessageFromJava(message) {
         var messageHandler;
         var responseCallback;
@@ -61,7 +172,8 @@
             if (!responseCallback) {
                 return;
             }
-            responseCallback(message.responseData);
+            // a failed call has a {code, message} responseError and no responseData
+            responseCallback(message.responseData, message.responseError);
             delete responseCallbacks[message.responseId];
         } else {
             if (message.callbackId) {
@@ -92,6 +204,9 @@
     }
     window.WebViewJavascriptBridge = bridge;
 
+    // tell java the bridge is installed, messages queued while the page was loading are sent then
+    _doSend({handlerName: "_bridgeReady"});
+
     window.close=function(){
       bridge.callHandler("_closePage")
     }
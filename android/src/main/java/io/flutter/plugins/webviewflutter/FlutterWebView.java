@@ -6,6 +6,7 @@ package io.flutter.plugins.webviewflutter;
 
 import android.annotation.TargetApi;
 import android.content.Context;
+import android.content.MutableContextWrapper;
 import android.hardware.display.DisplayManager;
 import android.os.Build;
 import android.os.Handler;
@@ -18,11 +19,14 @@ import android.webkit.WebView;
 import android.webkit.WebViewClient;
 import androidx.annotation.NonNull;
 
-import org.json.JSONObject;
+import org.json.JSONException;
 
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import io.flutter.plugin.common.BinaryMessenger;
 import io.flutter.plugin.common.MethodCall;
@@ -30,14 +34,39 @@ import io.flutter.plugin.common.MethodChannel;
 import io.flutter.plugin.common.MethodChannel.MethodCallHandler;
 import io.flutter.plugin.common.MethodChannel.Result;
 import io.flutter.plugin.platform.PlatformView;
+import io.flutter.plugins.webviewflutter.view.WVJBRawData;
 import io.flutter.plugins.webviewflutter.view.WVJBWebView;
 
 public class FlutterWebView implements PlatformView, MethodCallHandler {
   private static final String JS_CHANNEL_NAMES_FIELD = "javascriptChannelNames";
+  private static final String PLATFORM_OPTIONS_FIELD = "platformOptions";
   private final WVJBWebView webView;
   private final MethodChannel methodChannel;
   private final FlutterWebViewClient flutterWebViewClient;
   private final Handler platformThreadHandler;
+  // set when calls of handlers registered from Dart are forwarded in batches
+  private JsBridgeCallBatcher jsBridgeCallBatcher;
+  // set when JavaScript channel messages are delivered in batches
+  private JavaScriptChannelBatcher javaScriptChannelBatcher;
+  // capacity and overflow policy by channel name, from the javascriptChannelLimits option
+  private Map<String, Map<String, Object>> javaScriptChannelLimits = Collections.emptyMap();
+  // queues of the channels that have one, by channel name
+  private final Map<String, JavaScriptChannelQueue> javaScriptChannelQueues = new HashMap<>();
+  // set when all JavaScript channels share one JavaScript interface
+  private JavaScriptChannelMultiplexer javaScriptChannelMultiplexer;
+  private final BinaryMessenger messenger;
+  private final int id;
+  private final FlutterWebViewPool webViewPool;
+  // set when the web view goes back to the pool on dispose, with the configuration it is kept by
+  private final String recycleConfigurationKey;
+  // names of the JavaScript channels currently added to the web view
+  private final Set<String> javaScriptChannelNames = new HashSet<>();
+  // set when the page and Dart exchange binary messages, with the name of its JavaScript object
+  private JavaScriptBinaryChannel javaScriptBinaryChannel;
+  private String javaScriptBinaryChannelName;
+  // pauses the web view while it is hidden, or as Dart forces it
+  private final WebViewVisibilityTracker.Entry visibility;
+  private final WebViewMemoryManager memoryManager;
 
   // Verifies that a url opened by `Window.open` has a secure url.
   private class FlutterWebChromeClient extends WebChromeClient {
@@ -91,21 +120,73 @@ public class FlutterWebView implements PlatformView, MethodCallHandler {
       BinaryMessenger messenger,
       int id,
       Map<String, Object> params,
-      View containerView) {
-
-    DisplayListenerProxy displayListenerProxy = new DisplayListenerProxy();
-    DisplayManager displayManager =
-        (DisplayManager) context.getSystemService(Context.DISPLAY_SERVICE);
-    displayListenerProxy.onPreWebViewInitialization(displayManager);
+      View containerView,
+      FlutterWebViewPool webViewPool,
+      WebViewMemoryManager memoryManager) {
+    this.messenger = messenger;
+    this.id = id;
+    this.webViewPool = webViewPool;
+    this.memoryManager = memoryManager;
 
     Boolean usesHybridComposition = (Boolean) params.get("usesHybridComposition");
-    webView =
-        (usesHybridComposition)
-            ? new WVJBWebView(context)
-            : new InputAwareWebView(context, containerView);
-
-    registerDismissLoadingMaskHandler();
-    displayListenerProxy.onPostWebViewInitialization(displayManager);
+    Map<String, Object> initialSettings = (Map<String, Object>) params.get("settings");
+    Integer jsMode = initialSettings != null ? (Integer) initialSettings.get("jsMode") : null;
+    Map<String, Object> initialPlatformOptions =
+        (Map<String, Object>) params.get(PLATFORM_OPTIONS_FIELD);
+    recycleConfigurationKey =
+        webViewPool != null
+                && initialPlatformOptions != null
+                && Boolean.TRUE.equals(initialPlatformOptions.get("recycleOnDispose"))
+            ? FlutterWebViewPool.configurationKey(usesHybridComposition, jsMode)
+            : null;
+    String initialUrl = (String) params.get("initialUrl");
+    List<String> initialChannelNames = (List<String>) params.get(JS_CHANNEL_NAMES_FIELD);
+    // objects the page gets from interfaces and listeners added before it loads
+    boolean addsJavaScriptObjects =
+        (initialChannelNames != null && !initialChannelNames.isEmpty())
+            || (initialPlatformOptions != null
+                && (Boolean.TRUE.equals(initialPlatformOptions.get("javascriptChannelMultiplexing"))
+                    || initialPlatformOptions.get("javascriptBinaryChannel") != null));
+    FlutterWebViewPool.Preloaded preloaded =
+        webViewPool != null && initialUrl != null
+            ? webViewPool.takePreloaded(
+                context,
+                initialUrl,
+                usesHybridComposition,
+                jsMode,
+                (String) params.get("userAgent"),
+                addsJavaScriptObjects)
+            : null;
+    WVJBWebView pooledWebView = null;
+    if (preloaded != null) {
+      pooledWebView = preloaded.webView;
+      if (!preloaded.adopted) {
+        // the web view is reused, the page is loaded again below like for any other web view
+        preloaded = null;
+      }
+    } else if (webViewPool != null) {
+      pooledWebView = webViewPool.acquire(context, usesHybridComposition, jsMode);
+    }
+    if (pooledWebView != null) {
+      webView = pooledWebView;
+      registerDismissLoadingMaskHandler();
+    } else {
+      DisplayListenerProxy displayListenerProxy = new DisplayListenerProxy();
+      DisplayManager displayManager =
+          (DisplayManager) context.getSystemService(Context.DISPLAY_SERVICE);
+      displayListenerProxy.onPreWebViewInitialization(displayManager);
+
+      // a web view that is kept after dispose must not hold on to the activity
+      Context webViewContext =
+          recycleConfigurationKey != null ? new MutableContextWrapper(context) : context;
+      webView =
+          (usesHybridComposition)
+              ? new WVJBWebView(webViewContext)
+              : new InputAwareWebView(webViewContext, containerView);
+
+      registerDismissLoadingMaskHandler();
+      displayListenerProxy.onPostWebViewInitialization(displayManager);
+    }
 
     platformThreadHandler = new Handler(context.getMainLooper());
     // Allow local storage.
@@ -118,10 +199,16 @@ public class FlutterWebView implements PlatformView, MethodCallHandler {
 
     methodChannel = new MethodChannel(messenger, "plugins.flutter.io/webview_" + id);
     methodChannel.setMethodCallHandler(this);
+    visibility = WebViewVisibilityTracker.getInstance().add(webView);
+    if (memoryManager != null) {
+      memoryManager.add(this);
+    }
 
     flutterWebViewClient = new FlutterWebViewClient(methodChannel);
     Map<String, Object> settings = (Map<String, Object>) params.get("settings");
     if (settings != null) applySettings(settings);
+    Map<String, Object> platformOptions = (Map<String, Object>) params.get(PLATFORM_OPTIONS_FIELD);
+    if (platformOptions != null) applyPlatformOptions(platformOptions);
 
     if (params.containsKey(JS_CHANNEL_NAMES_FIELD)) {
       List<String> names = (List<String>) params.get(JS_CHANNEL_NAMES_FIELD);
@@ -134,7 +221,11 @@ public class FlutterWebView implements PlatformView, MethodCallHandler {
       String userAgent = (String) params.get("userAgent");
       updateUserAgent(userAgent);
     }
-    if (params.containsKey("initialUrl")) {
+    if (preloaded != null) {
+      // the page is loaded or loading already, Dart still gets the events it would have seen
+      flutterWebViewClient.replayPageEvents(
+          webView, initialUrl, preloaded.pageStarted, preloaded.pageFinished);
+    } else if (params.containsKey("initialUrl")) {
       String url = (String) params.get("initialUrl");
       webView.loadUrl(url);
     }
@@ -189,6 +280,7 @@ public class FlutterWebView implements PlatformView, MethodCallHandler {
     if (webView instanceof InputAwareWebView) {
       ((InputAwareWebView) webView).setContainerView(flutterView);
     }
+    WebViewVisibilityTracker.getInstance().setHostAttached(visibility, true);
   }
 
   // @Override
@@ -201,6 +293,7 @@ public class FlutterWebView implements PlatformView, MethodCallHandler {
     if (webView instanceof InputAwareWebView) {
       ((InputAwareWebView) webView).setContainerView(null);
     }
+    WebViewVisibilityTracker.getInstance().setHostAttached(visibility, false);
   }
 
   @Override
@@ -260,7 +353,30 @@ public class FlutterWebView implements PlatformView, MethodCallHandler {
         registerHandler(methodCall, result);
         break;
       case "callHandler":
-        callHandler(methodCall);
+        callHandler(methodCall, result);
+        break;
+      case "callHandlerWithData":
+        callHandlerWithData(methodCall, result);
+        break;
+      case "getBridgeStats":
+        getBridgeStats(result);
+        break;
+      case "getJavascriptChannelStats":
+        getJavaScriptChannelStats(result);
+        break;
+      case "setNavigationRules":
+        setNavigationRules(methodCall, result);
+        break;
+      case "getNavigationRuleStats":
+        result.success(flutterWebViewClient.getNavigationRuleStats());
+        break;
+      case "setLifecycleOverride":
+        WebViewVisibilityTracker.getInstance()
+            .setOverride(visibility, (int) methodCall.arguments);
+        result.success(null);
+        break;
+      case "getLifecycleStats":
+        result.success(WebViewVisibilityTracker.getInstance().getStats(visibility));
         break;
       default:
         result.notImplemented();
@@ -342,8 +458,15 @@ public class FlutterWebView implements PlatformView, MethodCallHandler {
   @SuppressWarnings("unchecked")
   private void removeJavaScriptChannels(MethodCall methodCall, Result result) {
     List<String> channelNames = (List<String>) methodCall.arguments;
+    if (javaScriptChannelMultiplexer != null) {
+      javaScriptChannelMultiplexer.removeChannels(channelNames);
+    }
     for (String channelName : channelNames) {
-      webView.removeJavascriptInterface(channelName);
+      if (javaScriptChannelMultiplexer == null) {
+        webView.removeJavascriptInterface(channelName);
+      }
+      javaScriptChannelQueues.remove(channelName);
+      javaScriptChannelNames.remove(channelName);
     }
     result.success(null);
   }
@@ -385,8 +508,30 @@ public class FlutterWebView implements PlatformView, MethodCallHandler {
     result.success(webView.getScrollY());
   }
 
+  private void getBridgeStats(Result result) {
+    result.success(webView.getBridgeStats());
+  }
+
+  @SuppressWarnings("unchecked")
+  private void setNavigationRules(MethodCall methodCall, Result result) {
+    List<Map<String, Object>> rules = (List<Map<String, Object>>) methodCall.arguments;
+    try {
+      flutterWebViewClient.setNavigationRules(
+          rules == null || rules.isEmpty() ? null : new NavigationRules(rules));
+    } catch (IllegalArgumentException e) {
+      result.error("invalidRule", e.getMessage(), null);
+      return;
+    }
+    result.success(null);
+  }
+
   private void registerHandler(final MethodCall methodCall, MethodChannel.Result result) {
     final String handlerName = (String) methodCall.arguments;
+    if (jsBridgeCallBatcher != null) {
+      webView.registerHandler(handlerName, jsBridgeCallBatcher.createHandler(handlerName));
+      result.success(null);
+      return;
+    }
     WVJBWebView.WVJBHandler<String, String> handler = new WVJBWebView.WVJBHandler<String, String>() {
       @Override
       public void handler(String s, final WVJBWebView.WVJBResponseCallback<String> wvjbResponseCallback) {
@@ -413,9 +558,69 @@ public class FlutterWebView implements PlatformView, MethodCallHandler {
     result.success(null);
   }
 
-  private void callHandler(MethodCall methodCall) {
+  // The handler receives the arguments, handlerName included, as one JSON string.
+  private void callHandler(MethodCall methodCall, Result result) {
     final Map<String, Object> arguments = (Map<String, Object>) methodCall.arguments;
-    webView.callHandler(arguments.get("handlerName").toString(), new JSONObject(arguments).toString());
+    webView.callHandler(arguments.get("handlerName").toString(),
+        WVJBRawData.encode(arguments).toJson());
+    result.success(null);
+  }
+
+  // The data is written into the bridge message as structured JSON, so it is encoded once and the
+  // handler receives it as an object instead of a string to parse. The result completes with the
+  // handler's response, any number of calls can wait for theirs at once.
+  private void callHandlerWithData(MethodCall methodCall, Result result) {
+    final String handlerName = methodCall.argument("handlerName");
+    final Number timeoutMillis = methodCall.argument("timeoutMillis");
+    HandlerResponse response = new HandlerResponse(result);
+    if (timeoutMillis == null) {
+      webView.callHandler(handlerName, methodCall.argument("data"), response);
+    } else {
+      webView.callHandler(handlerName, methodCall.argument("data"), response, timeoutMillis.longValue());
+    }
+  }
+
+  // Completes a method channel result with the response of a javascript handler.
+  private static class HandlerResponse
+      implements WVJBWebView.WVJBRawResponseCallback, WVJBWebView.WVJBExpiringResponseCallback<Object> {
+    private final Result result;
+
+    HandlerResponse(Result result) {
+      this.result = result;
+    }
+
+    @Override
+    public void onResult(Object data) {
+      if (!(data instanceof WVJBRawData)) {
+        result.success(data);
+        return;
+      }
+      try {
+        result.success(((WVJBRawData) data).decodeAsCollections());
+      } catch (JSONException e) {
+        result.error("invalidResponse", e.getMessage(), null);
+      }
+    }
+
+    @Override
+    public void onExpired(int reason) {
+      switch (reason) {
+        case WVJBWebView.CALLBACK_TIMED_OUT:
+          result.error("timeout", "The JavaScript handler did not respond in time", null);
+          break;
+        case WVJBWebView.CALLBACK_EVICTED:
+          result.error("evicted", "Too many calls were waiting for a response", null);
+          break;
+        case WVJBWebView.CALLBACK_PAGE_CHANGED:
+          result.error("pageChanged", "The page was replaced before the handler responded", null);
+          break;
+        case WVJBWebView.CALLBACK_REJECTED:
+          result.error("rejected", "The call was too large to send", null);
+          break;
+        default:
+          result.error("cancelled", "The WebView was disposed", null);
+      }
+    }
   }
 
   private void applySettings(Map<String, Object> settings) {
@@ -457,6 +662,93 @@ public class FlutterWebView implements PlatformView, MethodCallHandler {
     }
   }
 
+  // Options that only exist on this platform and can only be set when the web view is created.
+  @SuppressWarnings("unchecked")
+  private void applyPlatformOptions(Map<String, Object> options) {
+    for (String key : options.keySet()) {
+      switch (key) {
+        case "bridgeMessageBatching":
+          webView.setMessageBatchingEnabled((boolean) options.get(key));
+          break;
+        case "bridgeDocumentStartInjection":
+          webView.setDocumentStartInjectionEnabled((boolean) options.get(key));
+          break;
+        case "bridgeChunkThreshold":
+          webView.setChunkThreshold((int) options.get(key));
+          break;
+        case "bridgeMaxInFlightChars":
+          webView.setMaxInFlightChars((int) options.get(key));
+          break;
+        case "bridgeMessagePortTransport":
+          webView.setMessagePortTransportEnabled((boolean) options.get(key));
+          break;
+        case "bridgeCallBatching":
+          jsBridgeCallBatcher =
+              (boolean) options.get(key) ? new JsBridgeCallBatcher(methodChannel) : null;
+          break;
+        case "javascriptChannelBatching":
+          javaScriptChannelBatcher =
+              (boolean) options.get(key)
+                  ? new JavaScriptChannelBatcher(methodChannel, platformThreadHandler)
+                  : null;
+          break;
+        case "javascriptChannelMultiplexing":
+          if ((boolean) options.get(key)
+              && javaScriptChannelMultiplexer == null
+              && JavaScriptChannelMultiplexer.isSupported()) {
+            javaScriptChannelMultiplexer = new JavaScriptChannelMultiplexer(webView);
+            javaScriptChannelMultiplexer.install();
+          }
+          break;
+        case "progressThrottling":
+          Map<String, Object> throttling = (Map<String, Object>) options.get(key);
+          Integer minDelta = (Integer) throttling.get("minDelta");
+          Integer minIntervalMillis = (Integer) throttling.get("minIntervalMillis");
+          flutterWebViewClient.setProgressThrottling(
+              minDelta != null ? minDelta : 0, minIntervalMillis != null ? minIntervalMillis : 0);
+          break;
+        case "navigationDecisionCache":
+          Map<String, Object> cache = (Map<String, Object>) options.get(key);
+          Boolean cacheDenials = (Boolean) cache.get("cacheDenials");
+          flutterWebViewClient.setNavigationDecisionCache(
+              new NavigationDecisionCache(
+                  (int) cache.get("maxEntries"),
+                  (int) cache.get("ttlMillis"),
+                  cacheDenials != null && cacheDenials));
+          break;
+        case "recycleOnDispose":
+          // read in the constructor, before the web view is created
+          break;
+        case "javascriptBinaryChannel":
+          if (javaScriptBinaryChannel == null && JavaScriptBinaryChannel.isSupported()) {
+            javaScriptBinaryChannelName = (String) options.get(key);
+            javaScriptBinaryChannel = new JavaScriptBinaryChannel(messenger, id);
+            javaScriptBinaryChannel.install(webView, javaScriptBinaryChannelName);
+            final JavaScriptBinaryChannel binaryChannel = javaScriptBinaryChannel;
+            flutterWebViewClient.setPageStartedListener(
+                new Runnable() {
+                  @Override
+                  public void run() {
+                    binaryChannel.onPageStarted();
+                  }
+                });
+          }
+          break;
+        case "javascriptChannelLimits":
+          javaScriptChannelLimits = (Map<String, Map<String, Object>>) options.get(key);
+          break;
+        case "pauseWhenHidden":
+          Map<String, Object> pausing = (Map<String, Object>) options.get(key);
+          Integer graceMillis = (Integer) pausing.get("graceMillis");
+          WebViewVisibilityTracker.getInstance()
+              .setGraceMillis(visibility, graceMillis != null ? graceMillis : 0);
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown WebView platform option: " + key);
+      }
+    }
+  }
+
   private void updateJsMode(int mode) {
     switch (mode) {
       case 0: // disabled
@@ -480,10 +772,46 @@ public class FlutterWebView implements PlatformView, MethodCallHandler {
   }
 
   private void registerJavaScriptChannelNames(List<String> channelNames) {
+    Map<String, JavaScriptChannel> channels = new HashMap<>();
+    javaScriptChannelNames.addAll(channelNames);
     for (String channelName : channelNames) {
-      webView.addJavascriptInterface(
-          new JavaScriptChannel(methodChannel, channelName, platformThreadHandler), channelName);
+      JavaScriptChannelQueue queue = createJavaScriptChannelQueue(channelName);
+      if (queue != null) {
+        javaScriptChannelQueues.put(channelName, queue);
+      }
+      JavaScriptChannel channel =
+          new JavaScriptChannel(
+              methodChannel, channelName, platformThreadHandler, javaScriptChannelBatcher, queue);
+      if (javaScriptChannelMultiplexer != null) {
+        channels.put(channelName, channel);
+      } else {
+        webView.addJavascriptInterface(channel, channelName);
+      }
+    }
+    if (javaScriptChannelMultiplexer != null) {
+      javaScriptChannelMultiplexer.addChannels(channels);
+    }
+  }
+
+  // Channels with limits, and all channels when messages are batched, queue their messages.
+  private JavaScriptChannelQueue createJavaScriptChannelQueue(String channelName) {
+    Map<String, Object> limits = javaScriptChannelLimits.get(channelName);
+    if (limits == null) {
+      return javaScriptChannelBatcher != null ? new JavaScriptChannelQueue(channelName) : null;
+    }
+    String policy = (String) limits.get("overflowPolicy");
+    return new JavaScriptChannelQueue(
+        channelName,
+        (int) limits.get("capacity"),
+        JavaScriptChannelQueue.parseOverflowPolicy(policy != null ? policy : "dropOldest"));
+  }
+
+  private void getJavaScriptChannelStats(Result result) {
+    Map<String, Object> stats = new HashMap<>();
+    for (JavaScriptChannelQueue queue : javaScriptChannelQueues.values()) {
+      stats.put(queue.channelName, queue.getStats());
     }
+    result.success(stats);
   }
 
   private void updateUserAgent(String userAgent) {
@@ -493,9 +821,44 @@ public class FlutterWebView implements PlatformView, MethodCallHandler {
   @Override
   public void dispose() {
     methodChannel.setMethodCallHandler(null);
+    WebViewVisibilityTracker.getInstance().remove(visibility);
+    if (memoryManager != null) {
+      memoryManager.remove(this);
+    }
+    if (javaScriptBinaryChannel != null) {
+      javaScriptBinaryChannel.uninstall(webView, javaScriptBinaryChannelName);
+    }
     if (webView instanceof InputAwareWebView) {
       ((InputAwareWebView) webView).dispose();
     }
+    if (recycleConfigurationKey != null) {
+      removeAllJavaScriptChannels();
+      webViewPool.recycle(webView, recycleConfigurationKey);
+      return;
+    }
     webView.destroy();
   }
+
+  /** Drops the navigation decisions remembered by the navigation decision cache. */
+  int clearNavigationDecisionCache() {
+    return flutterWebViewClient.clearNavigationDecisionCache();
+  }
+
+  /** Pauses the web view right away if it is hidden. Returns whether it was paused. */
+  boolean pauseIfHidden() {
+    return WebViewVisibilityTracker.getInstance().pauseIfHidden(visibility);
+  }
+
+  // JavaScript interfaces outlive the page, a recycled web view must not expose them to its next use
+  private void removeAllJavaScriptChannels() {
+    if (javaScriptChannelMultiplexer != null) {
+      javaScriptChannelMultiplexer.uninstall();
+    } else {
+      for (String channelName : javaScriptChannelNames) {
+        webView.removeJavascriptInterface(channelName);
+      }
+    }
+    javaScriptChannelNames.clear();
+    javaScriptChannelQueues.clear();
+  }
 }
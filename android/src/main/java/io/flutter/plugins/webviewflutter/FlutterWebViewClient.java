@@ -9,6 +9,7 @@ import android.annotation.TargetApi;
 import android.graphics.Bitmap;
 import android.os.Build;
 import android.util.Log;
+import android.view.Choreographer;
 import android.view.KeyEvent;
 import android.webkit.WebResourceError;
 import android.webkit.WebResourceRequest;
@@ -33,11 +34,70 @@ class FlutterWebViewClient {
   private final MethodChannel methodChannel;
   private boolean hasNavigationDelegate;
   boolean hasProgressTracking;
+  // progress throttling, see setProgressThrottling
+  private int progressMinDelta = 0;
+  private long progressMinIntervalNanos = 0;
+  private int lastSentProgress = -1;
+  private long lastSentProgressNanos = 0;
+  // the newest progress not sent yet, -1 if there is none
+  private int pendingProgress = -1;
+  private boolean progressFrameScheduled = false;
+  // decides navigations without asking Dart, null when Dart did not set any rules
+  private NavigationRules navigationRules;
+  // the navigation delegate's recent main frame decisions, null unless enabled
+  private NavigationDecisionCache navigationDecisionCache;
+  // told when a page starts loading in the main frame, may be null
+  private Runnable pageStartedListener;
+
+  private final Choreographer.FrameCallback progressFrameCallback =
+      new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+          progressFrameScheduled = false;
+          sendPendingProgress(frameTimeNanos);
+        }
+      };
 
   FlutterWebViewClient(MethodChannel methodChannel) {
     this.methodChannel = methodChannel;
   }
 
+  /**
+   * Limits how often progress is sent to Dart. Progress is then sent on a frame, and only when it
+   * changed by at least {@code minDelta} and {@code minIntervalMillis} passed since the last
+   * update. 100 is always sent right away.
+   */
+  void setProgressThrottling(int minDelta, int minIntervalMillis) {
+    progressMinDelta = Math.max(0, minDelta);
+    progressMinIntervalNanos = Math.max(0, minIntervalMillis) * 1000000L;
+  }
+
+  void setNavigationRules(NavigationRules navigationRules) {
+    this.navigationRules = navigationRules;
+  }
+
+  void setPageStartedListener(Runnable pageStartedListener) {
+    this.pageStartedListener = pageStartedListener;
+  }
+
+  void setNavigationDecisionCache(NavigationDecisionCache navigationDecisionCache) {
+    this.navigationDecisionCache = navigationDecisionCache;
+  }
+
+  /** Drops the remembered navigation decisions and returns how many there were. */
+  int clearNavigationDecisionCache() {
+    return navigationDecisionCache != null ? navigationDecisionCache.clear() : 0;
+  }
+
+  Map<String, Object> getNavigationRuleStats() {
+    Map<String, Object> stats =
+        navigationRules != null ? navigationRules.getStats() : new HashMap<String, Object>();
+    if (navigationDecisionCache != null) {
+      stats.put("decisionCache", navigationDecisionCache.toMap());
+    }
+    return stats;
+  }
+
   private static String errorCodeToString(int errorCode) {
     switch (errorCode) {
       case WebViewClient.ERROR_AUTHENTICATION:
@@ -81,9 +141,18 @@ class FlutterWebViewClient {
 
   @TargetApi(Build.VERSION_CODES.LOLLIPOP)
   boolean shouldOverrideUrlLoading(WebView view, WebResourceRequest request) {
+    int ruleDecision = matchNavigationRules(request.getUrl().toString());
+    if (ruleDecision != NavigationRules.NO_MATCH) {
+      return ruleDecision == NavigationRules.DENY;
+    }
     if (!hasNavigationDelegate) {
       return false;
     }
+    Boolean cachedDecision =
+        request.isForMainFrame() ? getCachedDecision(request.getUrl().toString()) : null;
+    if (cachedDecision != null) {
+      return !cachedDecision;
+    }
     notifyOnNavigationRequest(
         request.getUrl().toString(), request.getRequestHeaders(), view, request.isForMainFrame());
     // We must make a synchronous decision here whether to allow the navigation or not,
@@ -101,9 +170,17 @@ class FlutterWebViewClient {
   }
 
   boolean shouldOverrideUrlLoading(WebView view, String url) {
+    int ruleDecision = matchNavigationRules(url);
+    if (ruleDecision != NavigationRules.NO_MATCH) {
+      return ruleDecision == NavigationRules.DENY;
+    }
     if (!hasNavigationDelegate) {
       return false;
     }
+    Boolean cachedDecision = getCachedDecision(url);
+    if (cachedDecision != null) {
+      return !cachedDecision;
+    }
     // This version of shouldOverrideUrlLoading is only invoked by the webview on devices with
     // webview versions  earlier than 67(it is also invoked when hasNavigationDelegate is false).
     // On these devices we cannot tell whether the navigation is targeted to the main frame or not.
@@ -116,7 +193,27 @@ class FlutterWebViewClient {
     return true;
   }
 
+  // Rules decide matching navigations synchronously, in any frame, without a round trip to Dart.
+  private int matchNavigationRules(String url) {
+    return navigationRules != null ? navigationRules.match(url) : NavigationRules.NO_MATCH;
+  }
+
+  // A cached decision is applied to the navigation itself, it is neither cancelled nor reloaded.
+  private Boolean getCachedDecision(String url) {
+    return navigationDecisionCache != null ? navigationDecisionCache.get(url) : null;
+  }
+
   private void onPageStarted(WebView view, String url) {
+    // a new load reports its progress from the start again, progress of the old load is dropped
+    lastSentProgress = -1;
+    pendingProgress = -1;
+    if (progressFrameScheduled) {
+      progressFrameScheduled = false;
+      Choreographer.getInstance().removeFrameCallback(progressFrameCallback);
+    }
+    if (pageStartedListener != null) {
+      pageStartedListener.run();
+    }
     Map<String, Object> args = new HashMap<>();
     args.put("url", url);
     methodChannel.invokeMethod("onPageStarted", args);
@@ -128,12 +225,62 @@ class FlutterWebViewClient {
     methodChannel.invokeMethod("onPageFinished", args);
   }
 
+  /** Reports the page events a preloaded web view went through before this client was set. */
+  void replayPageEvents(WebView view, String url, boolean pageStarted, boolean pageFinished) {
+    if (pageStarted) {
+      onPageStarted(view, url);
+    }
+    if (pageFinished) {
+      onPageFinished(view, url);
+    }
+  }
+
+  // Chromium reports progress many times per load, repeated values are never sent.
   void onLoadingProgress(int progress) {
-    if (hasProgressTracking) {
-      Map<String, Object> args = new HashMap<>();
-      args.put("progress", progress);
-      methodChannel.invokeMethod("onProgress", args);
+    if (!hasProgressTracking) {
+      return;
+    }
+    if (progress == 100 || (progressMinDelta == 0 && progressMinIntervalNanos == 0)) {
+      pendingProgress = -1;
+      sendProgress(progress, System.nanoTime());
+      return;
+    }
+    pendingProgress = progress;
+    if (!progressFrameScheduled) {
+      progressFrameScheduled = true;
+      Choreographer.getInstance().postFrameCallback(progressFrameCallback);
+    }
+  }
+
+  private void sendPendingProgress(long frameTimeNanos) {
+    if (pendingProgress < 0) {
+      return;
+    }
+    if (lastSentProgress >= 0
+        && Math.abs(pendingProgress - lastSentProgress) < progressMinDelta) {
+      // wait for a later update that moves far enough
+      return;
+    }
+    if (lastSentProgress >= 0
+        && frameTimeNanos - lastSentProgressNanos < progressMinIntervalNanos) {
+      progressFrameScheduled = true;
+      Choreographer.getInstance().postFrameCallback(progressFrameCallback);
+      return;
+    }
+    int progress = pendingProgress;
+    pendingProgress = -1;
+    sendProgress(progress, frameTimeNanos);
+  }
+
+  private void sendProgress(int progress, long timeNanos) {
+    if (progress == lastSentProgress) {
+      return;
     }
+    lastSentProgress = progress;
+    lastSentProgressNanos = timeNanos;
+    Map<String, Object> args = new HashMap<>();
+    args.put("progress", progress);
+    methodChannel.invokeMethod("onProgress", args);
   }
 
   private void onWebResourceError(
@@ -153,7 +300,9 @@ class FlutterWebViewClient {
     args.put("isForMainFrame", isMainFrame);
     if (isMainFrame) {
       methodChannel.invokeMethod(
-          "navigationRequest", args, new OnNavigationRequestResult(url, headers, webview));
+          "navigationRequest",
+          args,
+          new OnNavigationRequestResult(url, headers, webview, navigationDecisionCache));
     } else {
       methodChannel.invokeMethod("navigationRequest", args);
     }
@@ -164,6 +313,10 @@ class FlutterWebViewClient {
   // https://github.com/flutter/flutter/issues/29446.
   WebViewClient createWebViewClient(boolean hasNavigationDelegate) {
     this.hasNavigationDelegate = hasNavigationDelegate;
+    // decisions of a previous delegate do not apply to the new one
+    if (navigationDecisionCache != null) {
+      navigationDecisionCache.clear();
+    }
 
     if (!hasNavigationDelegate || android.os.Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
       return internalCreateWebViewClient();
@@ -265,16 +418,25 @@ class FlutterWebViewClient {
     private final String url;
     private final Map<String, String> headers;
     private final WebView webView;
+    private final NavigationDecisionCache decisionCache;
 
-    private OnNavigationRequestResult(String url, Map<String, String> headers, WebView webView) {
+    private OnNavigationRequestResult(
+        String url,
+        Map<String, String> headers,
+        WebView webView,
+        NavigationDecisionCache decisionCache) {
       this.url = url;
       this.headers = headers;
       this.webView = webView;
+      this.decisionCache = decisionCache;
     }
 
     @Override
     public void success(Object shouldLoad) {
       Boolean typedShouldLoad = (Boolean) shouldLoad;
+      if (decisionCache != null) {
+        decisionCache.put(url, typedShouldLoad);
+      }
       if (typedShouldLoad) {
         loadUrl();
       }
@@ -0,0 +1,590 @@
+// Copyright 2013 The Flutter Authors. All rights reserved.
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package io.flutter.plugins.webviewflutter;
+
+import android.content.Context;
+import android.content.MutableContextWrapper;
+import android.graphics.Bitmap;
+import android.hardware.display.DisplayManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.os.SystemClock;
+import android.view.View;
+import android.webkit.WebSettings;
+import android.webkit.WebView;
+import android.webkit.WebViewClient;
+
+import io.flutter.plugin.common.BinaryMessenger;
+import io.flutter.plugin.common.MethodCall;
+import io.flutter.plugin.common.MethodChannel;
+import io.flutter.plugin.common.MethodChannel.MethodCallHandler;
+import io.flutter.plugin.common.MethodChannel.Result;
+import io.flutter.plugins.webviewflutter.view.WVJBWebView;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps web views created ahead of time so that opening a web view does not pay for Chromium
+ * initialization and the web view setup.
+ *
+ * <p>The pool is filled one web view per main looper idle callback, so warming up never delays a
+ * frame that is already due. Pooled web views are created with a {@link MutableContextWrapper}
+ * around the application context, whose base is switched to the context of the platform view that
+ * takes them. All methods run on the main thread.
+ *
+ * <p>Disposed web views can also be returned to the pool instead of being destroyed. They are
+ * reset to a clean state and kept, up to a limit, by the configuration they were created for, and
+ * a later web view with the same configuration takes them before a pre-created one.
+ *
+ * <p>Finally a url can be preloaded off screen in a pooled web view, bridge injection included. A
+ * web view created later with that url as its initial url takes the loaded web view over if the
+ * page was loaded the way it would have loaded it: with JavaScript enabled, the same user agent
+ * and without JavaScript channels, channel multiplexing or a binary channel, whose objects only
+ * reach pages loaded after they were added. Otherwise it takes the web view and loads the url
+ * again. The preloaded page is never checked by
+ * a navigation delegate. Preloaded web views expire after a time to live and the least recently
+ * requested one is dropped when there are too many.
+ *
+ * <p>{@link WebViewMemoryManager} releases all pooled web views when the system runs low on memory
+ * and pauses the warm-up. The pool fills up again once {@link #WARM_UP_PAUSE_MILLIS} passed
+ * without memory pressure, every release starts that wait over.
+ */
+class FlutterWebViewPool implements MethodCallHandler {
+  static final int DEFAULT_MAX_RECYCLED = 2;
+  static final int DEFAULT_MAX_PRELOADED = 2;
+  static final long DEFAULT_PRELOAD_TTL_MILLIS = 5 * 60 * 1000;
+  static final long WARM_UP_PAUSE_MILLIS = 30 * 1000;
+
+  private final MethodChannel methodChannel;
+  private final Context applicationContext;
+  private final View containerView;
+  private final ArrayDeque<WVJBWebView> available = new ArrayDeque<>();
+  private int size = 0;
+  private boolean usesHybridComposition = true;
+  private boolean idleHandlerAdded = false;
+  private final Handler mainHandler = new Handler(Looper.getMainLooper());
+  // no web views are created for the pool before this time, set when memory runs low
+  private long warmUpResumeMillis = 0;
+  private long hitCount = 0;
+  private long missCount = 0;
+  private long createdCount = 0;
+  private long firstWarmUpMillis = -1;
+  private long totalWarmUpMillis = 0;
+  // web views returned by recycle, by configuration key, once their blank page loaded
+  private final Map<String, ArrayDeque<WVJBWebView>> recycled = new HashMap<>();
+  private int recycledCount = 0;
+  private int maxRecycled = DEFAULT_MAX_RECYCLED;
+  private long recycledHitCount = 0;
+  private long recycledDroppedCount = 0;
+  private boolean disposed = false;
+  private int maxPreloaded = DEFAULT_MAX_PRELOADED;
+  private long preloadTtlMillis = DEFAULT_PRELOAD_TTL_MILLIS;
+  private long preloadRequestCount = 0;
+  private long preloadHitCount = 0;
+  private long preloadMissCount = 0;
+  private long preloadReloadCount = 0;
+  private long preloadExpiredCount = 0;
+  private long preloadEvictedCount = 0;
+
+  /** A web view loading, or done loading, a url for a web view that is yet to be created. */
+  static class Preloaded {
+    final WVJBWebView webView;
+    final boolean usesHybridComposition;
+    // null for the default user agent
+    final String userAgent;
+    final long expiresMillis;
+    // the page events that happened before a platform view took the web view over
+    boolean pageStarted = false;
+    boolean pageFinished = false;
+    // false when the web view that took it over has to load the url again
+    boolean adopted = false;
+    // JavaScript timers are kept running until the page finished loading
+    private boolean holdsTimers = false;
+
+    Preloaded(
+        WVJBWebView webView,
+        boolean usesHybridComposition,
+        String userAgent,
+        long expiresMillis) {
+      this.webView = webView;
+      this.usesHybridComposition = usesHybridComposition;
+      this.userAgent = userAgent;
+      this.expiresMillis = expiresMillis;
+    }
+
+    void holdTimers() {
+      holdsTimers = true;
+      WebViewVisibilityTracker.getInstance().holdTimers();
+    }
+
+    void releaseTimers() {
+      if (holdsTimers) {
+        holdsTimers = false;
+        WebViewVisibilityTracker.getInstance().releaseTimers();
+      }
+    }
+
+    void destroy() {
+      releaseTimers();
+      webView.destroy();
+    }
+  }
+
+  // by url, in least recently requested order
+  private final LinkedHashMap<String, Preloaded> preloaded =
+      new LinkedHashMap<String, Preloaded>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Preloaded> eldest) {
+          if (size() <= maxPreloaded) {
+            return false;
+          }
+          preloadEvictedCount++;
+          eldest.getValue().destroy();
+          return true;
+        }
+      };
+
+  private final MessageQueue.IdleHandler warmUp =
+      new MessageQueue.IdleHandler() {
+        @Override
+        public boolean queueIdle() {
+          if (available.size() >= size) {
+            idleHandlerAdded = false;
+            return false;
+          }
+          available.add(createWebView(usesHybridComposition));
+          idleHandlerAdded = available.size() < size;
+          return idleHandlerAdded;
+        }
+      };
+
+  private final Runnable resumeWarmUp =
+      new Runnable() {
+        @Override
+        public void run() {
+          scheduleWarmUp();
+        }
+      };
+
+  FlutterWebViewPool(BinaryMessenger messenger, Context applicationContext, View containerView) {
+    this.applicationContext = applicationContext;
+    this.containerView = containerView;
+    methodChannel = new MethodChannel(messenger, "plugins.flutter.io/webview_pool");
+    methodChannel.setMethodCallHandler(this);
+  }
+
+  /** Identifies web views that can take each other's place. */
+  static String configurationKey(boolean usesHybridComposition, Integer jsMode) {
+    return (usesHybridComposition ? "hybrid" : "virtualDisplay") + "/" + jsMode;
+  }
+
+  @Override
+  public void onMethodCall(MethodCall methodCall, Result result) {
+    switch (methodCall.method) {
+      case "getStats":
+        result.success(getStats());
+        break;
+      case "preload":
+        preload(methodCall, result);
+        break;
+      case "setPreloadLimits":
+        setPreloadLimits(methodCall, result);
+        break;
+      default:
+        result.notImplemented();
+    }
+  }
+
+  /**
+   * Keeps {@code size} web views of the given kind ready, 0 disables the pool. Web views of the
+   * other kind that are already pooled are destroyed.
+   */
+  void setSize(int size, boolean usesHybridComposition) {
+    this.size = Math.max(0, size);
+    if (this.usesHybridComposition != usesHybridComposition) {
+      this.usesHybridComposition = usesHybridComposition;
+      trim(0);
+    }
+    trim(this.size);
+    scheduleWarmUp();
+  }
+
+  /** Keeps at most {@code maxRecycled} disposed web views, 0 destroys them all. */
+  void setMaxRecycled(int maxRecycled) {
+    this.maxRecycled = Math.max(0, maxRecycled);
+    trimRecycled(this.maxRecycled);
+  }
+
+  /**
+   * Returns a recycled or pre-created web view that now uses {@code context}, or null if none of
+   * the requested configuration is ready.
+   */
+  WVJBWebView acquire(Context context, boolean usesHybridComposition, Integer jsMode) {
+    ArrayDeque<WVJBWebView> sameConfiguration =
+        recycled.get(configurationKey(usesHybridComposition, jsMode));
+    if (sameConfiguration != null && !sameConfiguration.isEmpty()) {
+      recycledHitCount++;
+      recycledCount--;
+      WVJBWebView webView = sameConfiguration.poll();
+      ((MutableContextWrapper) webView.getContext()).setBaseContext(context);
+      return webView;
+    }
+    if (usesHybridComposition != this.usesHybridComposition || available.isEmpty()) {
+      if (size > 0) {
+        missCount++;
+      }
+      return null;
+    }
+    hitCount++;
+    WVJBWebView webView = available.poll();
+    ((MutableContextWrapper) webView.getContext()).setBaseContext(context);
+    scheduleWarmUp();
+    return webView;
+  }
+
+  @SuppressWarnings("unchecked")
+  private void preload(MethodCall methodCall, Result result) {
+    String url = methodCall.argument("url");
+    Map<String, String> headers = methodCall.argument("headers");
+    Boolean usesHybridComposition = methodCall.argument("usesHybridComposition");
+    String userAgent = methodCall.argument("userAgent");
+    if (disposed || maxPreloaded == 0) {
+      result.success(false);
+      return;
+    }
+    preloadRequestCount++;
+    removeExpiredPreloads();
+    Preloaded existing = preloaded.get(url);
+    if (existing != null
+        && existing.usesHybridComposition == usesHybridComposition
+        && equals(existing.userAgent, userAgent)) {
+      result.success(true);
+      return;
+    }
+    WVJBWebView webView =
+        usesHybridComposition == this.usesHybridComposition && !available.isEmpty()
+            ? available.poll()
+            : createWebView(usesHybridComposition);
+    scheduleWarmUp();
+    final Preloaded entry =
+        new Preloaded(
+            webView,
+            usesHybridComposition,
+            userAgent,
+            SystemClock.elapsedRealtime() + preloadTtlMillis);
+    // the bridge is injected as the page loads, which needs JavaScript
+    webView.getSettings().setJavaScriptEnabled(true);
+    if (userAgent != null) {
+      webView.getSettings().setUserAgentString(userAgent);
+    }
+    webView.setWebViewClient(
+        new WebViewClient() {
+          @Override
+          public void onPageStarted(WebView view, String url, Bitmap favicon) {
+            entry.pageStarted = true;
+          }
+
+          @Override
+          public void onPageFinished(WebView view, String url) {
+            entry.pageFinished = true;
+            entry.releaseTimers();
+          }
+        });
+    // the web view is not tracked, its page would not load with timers paused by hidden web views
+    entry.holdTimers();
+    Preloaded replaced = preloaded.put(url, entry);
+    if (replaced != null) {
+      replaced.destroy();
+    }
+    if (headers != null) {
+      webView.loadUrl(url, headers);
+    } else {
+      webView.loadUrl(url);
+    }
+    result.success(true);
+  }
+
+  private void setPreloadLimits(MethodCall methodCall, Result result) {
+    Integer maxEntries = methodCall.argument("maxEntries");
+    Integer ttlMillis = methodCall.argument("ttlMillis");
+    if (maxEntries != null) {
+      maxPreloaded = Math.max(0, maxEntries);
+      trimPreloaded(maxPreloaded);
+    }
+    if (ttlMillis != null) {
+      preloadTtlMillis = Math.max(0, ttlMillis);
+    }
+    result.success(null);
+  }
+
+  /**
+   * Returns the web view preloading {@code url} for the given composition mode, now using {@code
+   * context}, or null if there is none or it expired. The caller installs its own clients. If the
+   * entry is {@link Preloaded#adopted} the caller replays the page events recorded so far,
+   * otherwise the page was loaded without the JavaScript mode, user agent or JavaScript objects the
+   * caller needs and the caller loads the url again.
+   */
+  Preloaded takePreloaded(
+      Context context,
+      String url,
+      boolean usesHybridComposition,
+      Integer jsMode,
+      String userAgent,
+      boolean addsJavaScriptObjects) {
+    removeExpiredPreloads();
+    Preloaded entry = preloaded.get(url);
+    if (entry == null || entry.usesHybridComposition != usesHybridComposition) {
+      // only web views created while preloading is in use count as misses
+      if (preloadRequestCount > 0) {
+        preloadMissCount++;
+      }
+      return null;
+    }
+    preloaded.remove(url);
+    // the web view that takes it over is tracked from now on
+    entry.releaseTimers();
+    // a jsMode of 1 is JavascriptMode.unrestricted
+    entry.adopted =
+        jsMode != null
+            && jsMode == 1
+            && equals(entry.userAgent, userAgent)
+            && !addsJavaScriptObjects;
+    if (entry.adopted) {
+      preloadHitCount++;
+    } else {
+      preloadReloadCount++;
+    }
+    entry.webView.setWebViewClient(null);
+    ((MutableContextWrapper) entry.webView.getContext()).setBaseContext(context);
+    return entry;
+  }
+
+  private static boolean equals(String a, String b) {
+    return a == null ? b == null : a.equals(b);
+  }
+
+  private void removeExpiredPreloads() {
+    long now = SystemClock.elapsedRealtime();
+    Iterator<Preloaded> entries = preloaded.values().iterator();
+    while (entries.hasNext()) {
+      Preloaded entry = entries.next();
+      if (now >= entry.expiresMillis) {
+        entries.remove();
+        entry.destroy();
+        preloadExpiredCount++;
+      }
+    }
+  }
+
+  /**
+   * Destroys preloaded web views, least recently requested first, until {@code count} are left.
+   * Returns how many were destroyed.
+   */
+  int trimPreloaded(int count) {
+    int destroyed = 0;
+    Iterator<Preloaded> entries = preloaded.values().iterator();
+    while (preloaded.size() > count && entries.hasNext()) {
+      Preloaded entry = entries.next();
+      entries.remove();
+      entry.destroy();
+      destroyed++;
+    }
+    return destroyed;
+  }
+
+  /**
+   * Resets a disposed web view and keeps it for a later web view with the same configuration.
+   *
+   * <p>The bridge drops everything of the previous use, the settings made by the plugin are
+   * restored and about:blank is loaded. The web view only becomes available once the blank page
+   * finished loading, the history, which then holds nothing of the previous use, is cleared and
+   * the bridge is reset once more.
+   * Web views that were not created on a {@link MutableContextWrapper} would keep their activity
+   * alive and are destroyed instead.
+   */
+  void recycle(final WVJBWebView webView, final String configurationKey) {
+    if (disposed || maxRecycled == 0 || !(webView.getContext() instanceof MutableContextWrapper)) {
+      webView.destroy();
+      return;
+    }
+    webView.stopLoading();
+    webView.reset();
+    resetPluginSettings(webView.getSettings());
+    webView.clearMatches();
+    ((MutableContextWrapper) webView.getContext()).setBaseContext(applicationContext);
+    webView.setWebViewClient(
+        new WebViewClient() {
+          private boolean blankPageLoaded = false;
+
+          @Override
+          public void onPageFinished(WebView view, String url) {
+            if (blankPageLoaded) {
+              return;
+            }
+            blankPageLoaded = true;
+            WebViewVisibilityTracker.getInstance().releaseTimers();
+            webView.clearHistory();
+            // the blank page went through the bridge too, the next page starts from scratch
+            webView.reset();
+            addRecycled(configurationKey, webView);
+          }
+        });
+    WebViewVisibilityTracker.getInstance().holdTimers();
+    webView.loadUrl("about:blank");
+  }
+
+  // undoes what FlutterWebView applies on top of the bridge's own settings
+  private static void resetPluginSettings(WebSettings settings) {
+    settings.setJavaScriptEnabled(false);
+    settings.setJavaScriptCanOpenWindowsAutomatically(false);
+    settings.setSupportMultipleWindows(false);
+    settings.setUserAgentString(null);
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+      settings.setMediaPlaybackRequiresUserGesture(true);
+    }
+  }
+
+  private void addRecycled(String configurationKey, WVJBWebView webView) {
+    if (disposed || recycledCount >= maxRecycled) {
+      recycledDroppedCount++;
+      webView.destroy();
+      return;
+    }
+    ArrayDeque<WVJBWebView> sameConfiguration = recycled.get(configurationKey);
+    if (sameConfiguration == null) {
+      sameConfiguration = new ArrayDeque<>();
+      recycled.put(configurationKey, sameConfiguration);
+    }
+    sameConfiguration.add(webView);
+    recycledCount++;
+  }
+
+  /**
+   * Destroys pre-created web views until at most {@code count} are left. Returns how many were
+   * destroyed.
+   */
+  int trim(int count) {
+    int destroyed = 0;
+    while (available.size() > count) {
+      available.poll().destroy();
+      destroyed++;
+    }
+    return destroyed;
+  }
+
+  /**
+   * Destroys recycled web views until at most {@code count} are left. Returns how many were
+   * destroyed.
+   */
+  int trimRecycled(int count) {
+    int destroyed = 0;
+    for (ArrayDeque<WVJBWebView> sameConfiguration : recycled.values()) {
+      while (recycledCount > count && !sameConfiguration.isEmpty()) {
+        sameConfiguration.poll().destroy();
+        recycledCount--;
+        destroyed++;
+      }
+    }
+    return destroyed;
+  }
+
+  /**
+   * Stops creating web views for the pool until {@link #WARM_UP_PAUSE_MILLIS} after {@code
+   * nowMillis}, called when the system runs low on memory. A later call starts the wait over. The
+   * web views already in the pool are kept, {@link #trim} releases them.
+   */
+  void pauseWarmUp(long nowMillis) {
+    warmUpResumeMillis = nowMillis + WARM_UP_PAUSE_MILLIS;
+    removeWarmUp();
+    mainHandler.removeCallbacks(resumeWarmUp);
+    mainHandler.postDelayed(resumeWarmUp, WARM_UP_PAUSE_MILLIS);
+  }
+
+  boolean isWarmUpPaused(long nowMillis) {
+    return nowMillis < warmUpResumeMillis;
+  }
+
+  void dispose() {
+    disposed = true;
+    trimRecycled(0);
+    trimPreloaded(0);
+    methodChannel.setMethodCallHandler(null);
+    removeWarmUp();
+    mainHandler.removeCallbacks(resumeWarmUp);
+    trim(0);
+  }
+
+  private void removeWarmUp() {
+    if (idleHandlerAdded) {
+      Looper.getMainLooper().getQueue().removeIdleHandler(warmUp);
+      idleHandlerAdded = false;
+    }
+  }
+
+  private void scheduleWarmUp() {
+    if (disposed
+        || idleHandlerAdded
+        || available.size() >= size
+        || isWarmUpPaused(SystemClock.elapsedRealtime())) {
+      return;
+    }
+    idleHandlerAdded = true;
+    Looper.getMainLooper().getQueue().addIdleHandler(warmUp);
+  }
+
+  private WVJBWebView createWebView(boolean usesHybridComposition) {
+    long start = SystemClock.elapsedRealtime();
+    Context context = new MutableContextWrapper(applicationContext);
+    DisplayListenerProxy displayListenerProxy = new DisplayListenerProxy();
+    DisplayManager displayManager =
+        (DisplayManager) applicationContext.getSystemService(Context.DISPLAY_SERVICE);
+    displayListenerProxy.onPreWebViewInitialization(displayManager);
+    WVJBWebView webView =
+        usesHybridComposition
+            ? new WVJBWebView(context)
+            : new InputAwareWebView(context, containerView);
+    displayListenerProxy.onPostWebViewInitialization(displayManager);
+    long elapsed = SystemClock.elapsedRealtime() - start;
+    // the first web view of the process also initializes Chromium
+    if (firstWarmUpMillis < 0) {
+      firstWarmUpMillis = elapsed;
+    }
+    totalWarmUpMillis += elapsed;
+    createdCount++;
+    return webView;
+  }
+
+  Map<String, Object> getStats() {
+    Map<String, Object> stats = new HashMap<>();
+    stats.put("size", size);
+    stats.put("available", available.size());
+    stats.put("warmUpPaused", isWarmUpPaused(SystemClock.elapsedRealtime()));
+    stats.put("hits", hitCount);
+    stats.put("misses", missCount);
+    stats.put("created", createdCount);
+    stats.put("firstWarmUpMillis", firstWarmUpMillis);
+    stats.put("totalWarmUpMillis", totalWarmUpMillis);
+    stats.put("recycled", recycledCount);
+    stats.put("maxRecycled", maxRecycled);
+    stats.put("recycledHits", recycledHitCount);
+    stats.put("recycledDropped", recycledDroppedCount);
+    stats.put("preloaded", preloaded.size());
+    stats.put("maxPreloaded", maxPreloaded);
+    stats.put("preloadTtlMillis", preloadTtlMillis);
+    stats.put("preloadRequests", preloadRequestCount);
+    stats.put("preloadHits", preloadHitCount);
+    stats.put("preloadMisses", preloadMissCount);
+    stats.put("preloadReloads", preloadReloadCount);
+    stats.put("preloadExpired", preloadExpiredCount);
+    stats.put("preloadEvicted", preloadEvictedCount);
+    return stats;
+  }
+}
@@ -0,0 +1,127 @@
+// Copyright 2013 The Flutter Authors. All rights reserved.
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package io.flutter.plugins.webviewflutter;
+
+import android.annotation.SuppressLint;
+import android.net.Uri;
+import android.util.Base64;
+import android.util.Log;
+import android.webkit.WebView;
+
+import androidx.webkit.JavaScriptReplyProxy;
+import androidx.webkit.WebMessageCompat;
+import androidx.webkit.WebViewCompat;
+import androidx.webkit.WebViewFeature;
+
+import io.flutter.plugin.common.BasicMessageChannel;
+import io.flutter.plugin.common.BinaryCodec;
+import io.flutter.plugin.common.BinaryMessenger;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+
+/**
+ * Moves binary messages between the page and Dart without turning them into strings on the way.
+ *
+ * <p>The page gets a `window.<name>` object from a web message listener. Array buffers it posts
+ * are copied once into a direct buffer and sent to Dart over a {@link BasicMessageChannel} with a
+ * {@link BinaryCodec}, and buffers Dart sends are posted back as array buffers that arrive in the
+ * object's `onmessage`. WebViews that cannot post array buffers exchange base64 strings instead,
+ * Dart sees bytes either way. Dart can only reach a page after the page posted a message, which
+ * is what gives the listener a way to reply. The reply of a message from Dart is an empty buffer
+ * when it was posted to the page and null when no page is connected.
+ */
+class JavaScriptBinaryChannel
+    implements WebViewCompat.WebMessageListener, BasicMessageChannel.MessageHandler<ByteBuffer> {
+  private static final String TAG = "JavaScriptBinaryChannel";
+
+  private final BasicMessageChannel<ByteBuffer> dartChannel;
+  private final boolean arrayBuffersSupported;
+  // the reply proxy of the main frame of the current page, set by its first message
+  private JavaScriptReplyProxy replyProxy;
+
+  JavaScriptBinaryChannel(BinaryMessenger messenger, int id) {
+    dartChannel =
+        new BasicMessageChannel<>(
+            messenger, "plugins.flutter.io/webview_binary_" + id, BinaryCodec.INSTANCE);
+    arrayBuffersSupported =
+        WebViewFeature.isFeatureSupported(WebViewFeature.WEB_MESSAGE_ARRAY_BUFFER);
+  }
+
+  static boolean isSupported() {
+    return WebViewFeature.isFeatureSupported(WebViewFeature.WEB_MESSAGE_LISTENER);
+  }
+
+  @SuppressLint("RequiresFeature")
+  void install(WebView webView, String name) {
+    WebViewCompat.addWebMessageListener(webView, name, Collections.singleton("*"), this);
+    dartChannel.setMessageHandler(this);
+  }
+
+  @SuppressLint("RequiresFeature")
+  void uninstall(WebView webView, String name) {
+    WebViewCompat.removeWebMessageListener(webView, name);
+    dartChannel.setMessageHandler(null);
+    replyProxy = null;
+  }
+
+  // Called on the main thread when a new page starts loading, the old page can no longer be
+  // reached and the new one connects with its first message.
+  void onPageStarted() {
+    replyProxy = null;
+  }
+
+  // Called on the main thread with a message from the page.
+  @SuppressLint("RequiresFeature")
+  @Override
+  public void onPostMessage(
+      WebView view,
+      WebMessageCompat message,
+      Uri sourceOrigin,
+      boolean isMainFrame,
+      JavaScriptReplyProxy replyProxy) {
+    if (!isMainFrame) {
+      return;
+    }
+    this.replyProxy = replyProxy;
+    byte[] bytes;
+    if (arrayBuffersSupported && message.getType() == WebMessageCompat.TYPE_ARRAY_BUFFER) {
+      bytes = message.getArrayBuffer();
+    } else {
+      String data = message.getData();
+      if (data == null) {
+        return;
+      }
+      try {
+        bytes = Base64.decode(data, Base64.DEFAULT);
+      } catch (IllegalArgumentException e) {
+        Log.w(TAG, "Dropping a message from the page that is not valid base64: " + e);
+        return;
+      }
+    }
+    // The platform channel only accepts direct buffers.
+    ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+    buffer.put(bytes);
+    dartChannel.send(buffer);
+  }
+
+  // Called on the main thread with a message from Dart.
+  @SuppressLint("RequiresFeature")
+  @Override
+  public void onMessage(ByteBuffer message, BasicMessageChannel.Reply<ByteBuffer> reply) {
+    if (replyProxy == null || message == null) {
+      reply.reply(null);
+      return;
+    }
+    byte[] bytes = new byte[message.remaining()];
+    message.get(bytes);
+    if (arrayBuffersSupported) {
+      replyProxy.postMessage(bytes);
+    } else {
+      replyProxy.postMessage(Base64.encodeToString(bytes, Base64.NO_WRAP));
+    }
+    reply.reply(ByteBuffer.allocateDirect(0));
+  }
+}
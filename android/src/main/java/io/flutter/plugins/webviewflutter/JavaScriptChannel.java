@@ -23,6 +23,8 @@ class JavaScriptChannel {
   private final MethodChannel methodChannel;
   private final String javaScriptChannelName;
   private final Handler platformThreadHandler;
+  private final JavaScriptChannelBatcher batcher;
+  private final JavaScriptChannelQueue queue;
 
   /**
    * @param methodChannel         the Flutter WebView method channel to which JS messages are sent
@@ -32,23 +34,67 @@ class JavaScriptChannel {
    */
   JavaScriptChannel(
       MethodChannel methodChannel, String javaScriptChannelName, Handler platformThreadHandler) {
+    this(methodChannel, javaScriptChannelName, platformThreadHandler, null, null);
+  }
+
+  /**
+   * @param batcher when not null, messages are handed to it and delivered to Dart once per frame
+   *     instead of with one method channel call each, a queue is required then
+   * @param queue when not null, messages wait in it until the platform thread delivers them, which
+   *     bounds how many can pend at once
+   */
+  JavaScriptChannel(
+      MethodChannel methodChannel,
+      String javaScriptChannelName,
+      Handler platformThreadHandler,
+      JavaScriptChannelBatcher batcher,
+      JavaScriptChannelQueue queue) {
     this.methodChannel = methodChannel;
     this.javaScriptChannelName = javaScriptChannelName;
     this.platformThreadHandler = platformThreadHandler;
+    this.batcher = batcher;
+    this.queue = queue;
+  }
+
+  // Delivers the queued messages, posted each time the queue asks for a drain.
+  private final Runnable drainQueue =
+      new Runnable() {
+        @Override
+        public void run() {
+          queue.beginDrain();
+          String message;
+          while ((message = queue.poll()) != null) {
+            sendMessage(message);
+          }
+        }
+      };
+
+  private void sendMessage(String message) {
+    HashMap<String, String> arguments = new HashMap<>();
+    arguments.put("channel", javaScriptChannelName);
+    arguments.put("message", message);
+    methodChannel.invokeMethod("javascriptChannelMessage", arguments);
   }
 
   // Suppressing unused warning as this is invoked from JavaScript.
   @SuppressWarnings("unused")
   @JavascriptInterface
   public void postMessage(final String message) {
+    if (batcher != null) {
+      batcher.add(queue, message);
+      return;
+    }
+    if (queue != null) {
+      if (queue.offer(message)) {
+        platformThreadHandler.post(drainQueue);
+      }
+      return;
+    }
     Runnable postMessageRunnable =
         new Runnable() {
           @Override
           public void run() {
-            HashMap<String, String> arguments = new HashMap<>();
-            arguments.put("channel", javaScriptChannelName);
-            arguments.put("message", message);
-            methodChannel.invokeMethod("javascriptChannelMessage", arguments);
+            sendMessage(message);
           }
         };
     if (platformThreadHandler.getLooper() == Looper.myLooper()) {
@@ -0,0 +1,98 @@
+// Copyright 2013 The Flutter Authors. All rights reserved.
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package io.flutter.plugins.webviewflutter;
+
+import android.os.Handler;
+import android.view.Choreographer;
+
+import io.flutter.plugin.common.MethodChannel;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Collects the messages of all {@link JavaScriptChannel}s of a WebView and delivers them to Dart
+ * once per frame.
+ *
+ * <p>Messages are queued in their channel's {@link JavaScriptChannelQueue} without locking on the
+ * JavaBridge thread, only the first message after a flush wakes the platform thread. A flush sends
+ * one `javascriptChannelMessages` call whose arguments hold each channel name once, in `channels`,
+ * and the messages as a flat `messages` list of channel index and message pairs. Messages of one
+ * channel keep the order they were posted in.
+ */
+class JavaScriptChannelBatcher {
+  private final MethodChannel methodChannel;
+  private final Handler platformThreadHandler;
+  // channels whose queue asked for a drain
+  private final ConcurrentLinkedQueue<JavaScriptChannelQueue> readyChannels =
+      new ConcurrentLinkedQueue<>();
+  private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
+  private final Choreographer.FrameCallback flushCallback =
+      new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+          flush();
+        }
+      };
+
+  private final Runnable scheduleFlush =
+      new Runnable() {
+        @Override
+        public void run() {
+          Choreographer.getInstance().postFrameCallback(flushCallback);
+        }
+      };
+
+  JavaScriptChannelBatcher(MethodChannel methodChannel, Handler platformThreadHandler) {
+    this.methodChannel = methodChannel;
+    this.platformThreadHandler = platformThreadHandler;
+  }
+
+  /** Queues a message, must only be called on the JavaBridge thread. */
+  void add(JavaScriptChannelQueue channel, String message) {
+    if (!channel.offer(message)) {
+      return;
+    }
+    readyChannels.add(channel);
+    if (flushScheduled.compareAndSet(false, true)) {
+      platformThreadHandler.post(scheduleFlush);
+    }
+  }
+
+  private void flush() {
+    // cleared first, a message added while draining schedules the next flush
+    flushScheduled.set(false);
+    Map<String, Integer> channelIndexes = new HashMap<>();
+    List<String> channels = new ArrayList<>();
+    List<Object> messages = new ArrayList<>();
+    JavaScriptChannelQueue channel;
+    while ((channel = readyChannels.poll()) != null) {
+      Integer index = channelIndexes.get(channel.channelName);
+      if (index == null) {
+        index = channels.size();
+        channelIndexes.put(channel.channelName, index);
+        channels.add(channel.channelName);
+      }
+      channel.beginDrain();
+      String message;
+      while ((message = channel.poll()) != null) {
+        messages.add(index);
+        messages.add(message);
+      }
+    }
+    if (messages.isEmpty()) {
+      return;
+    }
+    HashMap<String, Object> arguments = new HashMap<>();
+    arguments.put("channels", channels);
+    arguments.put("messages", messages);
+    methodChannel.invokeMethod("javascriptChannelMessages", arguments);
+  }
+}
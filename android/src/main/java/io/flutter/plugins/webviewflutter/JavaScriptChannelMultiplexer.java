@@ -0,0 +1,114 @@
+// Copyright 2013 The Flutter Authors. All rights reserved.
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package io.flutter.plugins.webviewflutter;
+
+import android.annotation.SuppressLint;
+import android.webkit.JavascriptInterface;
+
+import androidx.webkit.ScriptHandler;
+import androidx.webkit.WebViewCompat;
+import androidx.webkit.WebViewFeature;
+
+import io.flutter.plugins.webviewflutter.view.WVJBWebView;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serves every JavaScript channel of a WebView through a single JavaScript interface.
+ *
+ * <p>A shim installed at document start asks the interface for the current channel names and
+ * creates a `window.<name>` object with a `postMessage` method for each one, which forwards to the
+ * interface together with the channel name. Adding or removing a channel updates the registry here
+ * and runs the shim, or deletes the object, in the current page, so no reload is needed.
+ */
+class JavaScriptChannelMultiplexer {
+  static final String INTERFACE_NAME = "FlutterJavaScriptChannels";
+
+  private static final String SHIM =
+      "(function () {"
+          + "  var names = JSON.parse(" + INTERFACE_NAME + ".channelNames());"
+          + "  names.forEach(function (name) {"
+          + "    if (window[name] && window[name].__flutterJavaScriptChannel) {"
+          + "      return;"
+          + "    }"
+          + "    window[name] = {"
+          + "      __flutterJavaScriptChannel: true,"
+          + "      postMessage: function (message) {"
+          + "        " + INTERFACE_NAME + ".postMessage(name, String(message));"
+          + "      }"
+          + "    };"
+          + "  });"
+          + "})();";
+
+  private final WVJBWebView webView;
+  private final Map<String, JavaScriptChannel> channels = new ConcurrentHashMap<>();
+  private ScriptHandler shimHandler;
+
+  JavaScriptChannelMultiplexer(WVJBWebView webView) {
+    this.webView = webView;
+  }
+
+  /** The shim has to run before page scripts, which needs document start script support. */
+  static boolean isSupported() {
+    return WebViewFeature.isFeatureSupported(WebViewFeature.DOCUMENT_START_SCRIPT);
+  }
+
+  @SuppressLint({"RequiresFeature", "JavascriptInterface"})
+  void install() {
+    webView.addJavascriptInterface(this, INTERFACE_NAME);
+    shimHandler =
+        WebViewCompat.addDocumentStartJavaScript(webView, SHIM, Collections.singleton("*"));
+  }
+
+  /** Removes the interface and the shim, pages loaded afterwards have no channel objects. */
+  @SuppressLint("RequiresFeature")
+  void uninstall() {
+    webView.removeJavascriptInterface(INTERFACE_NAME);
+    if (shimHandler != null) {
+      shimHandler.remove();
+      shimHandler = null;
+    }
+    channels.clear();
+  }
+
+  /** Registers the channels and creates their objects in the current page. */
+  void addChannels(Map<String, JavaScriptChannel> added) {
+    channels.putAll(added);
+    webView.evaluateJavascript(SHIM);
+  }
+
+  /** Unregisters the channels and deletes their objects from the current page. */
+  void removeChannels(List<String> channelNames) {
+    StringBuilder script = new StringBuilder();
+    for (String channelName : channelNames) {
+      channels.remove(channelName);
+      script.append("delete window[").append(JSONObject.quote(channelName)).append("];");
+    }
+    webView.evaluateJavascript(script.toString());
+  }
+
+  // Suppressing unused warning as this is invoked from JavaScript.
+  @SuppressWarnings("unused")
+  @JavascriptInterface
+  public String channelNames() {
+    return new JSONArray(channels.keySet()).toString();
+  }
+
+  // Suppressing unused warning as this is invoked from JavaScript.
+  @SuppressWarnings("unused")
+  @JavascriptInterface
+  public void postMessage(String channelName, String message) {
+    JavaScriptChannel channel = channels.get(channelName);
+    if (channel != null) {
+      channel.postMessage(message);
+    }
+  }
+}
@@ -0,0 +1,122 @@
+// Copyright 2013 The Flutter Authors. All rights reserved.
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package io.flutter.plugins.webviewflutter;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The messages of one {@link JavaScriptChannel} that were posted but not yet delivered to Dart.
+ *
+ * <p>Messages are offered on the JavaBridge thread and polled on the platform thread without
+ * locking. When the queue holds `capacity` messages the overflow policy decides what happens to
+ * the next one.
+ *
+ * <p>A drain is scheduled whenever {@link #offer} returns true. The drain calls {@link
+ * #beginDrain} before it polls, so a message offered while it runs either is polled by it or
+ * schedules the next drain.
+ */
+class JavaScriptChannelQueue {
+  /** Drops the oldest queued message to make room for the new one. */
+  static final int DROP_OLDEST = 0;
+  /** Drops the new message. */
+  static final int DROP_NEWEST = 1;
+  /** Drops every queued message, only the new one is delivered. */
+  static final int COALESCE_LATEST = 2;
+
+  final String channelName;
+  private final int capacity;
+  private final int overflowPolicy;
+  private final ConcurrentLinkedQueue<String> messages = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger depth = new AtomicInteger(0);
+  private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
+  // only written by the JavaBridge thread
+  private volatile long droppedCount = 0;
+  private volatile int peakDepth = 0;
+
+  JavaScriptChannelQueue(String channelName, int capacity, int overflowPolicy) {
+    this.channelName = channelName;
+    this.capacity = Math.max(1, capacity);
+    this.overflowPolicy = overflowPolicy;
+  }
+
+  /** Creates a queue without a capacity limit. */
+  JavaScriptChannelQueue(String channelName) {
+    this(channelName, Integer.MAX_VALUE, DROP_NEWEST);
+  }
+
+  static int parseOverflowPolicy(String policy) {
+    switch (policy) {
+      case "dropOldest":
+        return DROP_OLDEST;
+      case "dropNewest":
+        return DROP_NEWEST;
+      case "coalesceLatest":
+        return COALESCE_LATEST;
+      default:
+        throw new IllegalArgumentException("Unknown JavaScript channel overflow policy: " + policy);
+    }
+  }
+
+  /**
+   * Queues a message posted by JavaScript, must only be called on the JavaBridge thread.
+   *
+   * @return true if no drain was scheduled, the caller then schedules one.
+   */
+  boolean offer(String message) {
+    if (depth.get() >= capacity) {
+      switch (overflowPolicy) {
+        case DROP_NEWEST:
+          droppedCount++;
+          return false;
+        case DROP_OLDEST:
+          if (messages.poll() != null) {
+            depth.decrementAndGet();
+            droppedCount++;
+          }
+          break;
+        default:
+          while (messages.poll() != null) {
+            depth.decrementAndGet();
+            droppedCount++;
+          }
+      }
+    }
+    int current = depth.incrementAndGet();
+    messages.add(message);
+    if (current > peakDepth) {
+      peakDepth = current;
+    }
+    // added before the flag is read: a drain that cleared the flag earlier polls the message,
+    // otherwise the flag is clear and the caller schedules a new drain
+    return drainScheduled.compareAndSet(false, true);
+  }
+
+  /** Must be called by a scheduled drain before it polls the queue. */
+  void beginDrain() {
+    drainScheduled.set(false);
+  }
+
+  /** Returns the oldest queued message, or null. */
+  String poll() {
+    String message = messages.poll();
+    if (message != null) {
+      depth.decrementAndGet();
+    }
+    return message;
+  }
+
+  Map<String, Object> getStats() {
+    Map<String, Object> stats = new HashMap<>();
+    stats.put("depth", Math.max(0, depth.get()));
+    stats.put("peakDepth", peakDepth);
+    stats.put("dropped", droppedCount);
+    stats.put("capacity", capacity == Integer.MAX_VALUE ? null : capacity);
+    return stats;
+  }
+}
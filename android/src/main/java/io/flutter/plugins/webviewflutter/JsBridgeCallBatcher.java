@@ -0,0 +1,162 @@
+// Copyright 2013 The Flutter Authors. All rights reserved.
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package io.flutter.plugins.webviewflutter;
+
+import android.util.Log;
+import android.view.Choreographer;
+
+import io.flutter.plugin.common.MethodChannel;
+import io.flutter.plugins.webviewflutter.view.WVJBRawData;
+import io.flutter.plugins.webviewflutter.view.WVJBWebView;
+
+import org.json.JSONException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Forwards calls of JavaScript bridge handlers registered from Dart in batches.
+ *
+ * <p>The calls made during one frame are sent to Dart as a single `onJsBridgeCalls` message, each
+ * tagged with its handler name and, when JavaScript waits for a response, a callback id. Dart
+ * replies with the `results` and the `errors` of the calls, both by callback id, and each is
+ * routed back to the JavaScript caller. Errors, including a failure of the whole batch, reach
+ * JavaScript as the second argument of its response callback. A call whose data cannot be decoded
+ * is not batched and fails right away with an `invalidData` error. All methods run on the main
+ * thread.
+ */
+class JsBridgeCallBatcher {
+  private static final String TAG = "JsBridgeCallBatcher";
+
+  private final MethodChannel methodChannel;
+  private ArrayList<Call> pendingCalls = new ArrayList<>();
+  private int lastCallbackId = 0;
+  private boolean flushScheduled = false;
+
+  private static class Call {
+    final String handlerName;
+    final Object data;
+    final Integer callbackId;
+    final WVJBWebView.WVJBResponseCallback<Object> callback;
+
+    Call(String handlerName, Object data, Integer callbackId,
+        WVJBWebView.WVJBResponseCallback<Object> callback) {
+      this.handlerName = handlerName;
+      this.data = data;
+      this.callbackId = callbackId;
+      this.callback = callback;
+    }
+  }
+
+  private final Choreographer.FrameCallback flushCallback =
+      new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+          flush();
+        }
+      };
+
+  JsBridgeCallBatcher(MethodChannel methodChannel) {
+    this.methodChannel = methodChannel;
+  }
+
+  /** Returns a bridge handler that queues its calls for the next batch. */
+  WVJBWebView.WVJBHandler<Object, Object> createHandler(final String handlerName) {
+    return new WVJBWebView.WVJBRawHandler<Object>() {
+      @Override
+      public void handler(Object data, WVJBWebView.WVJBResponseCallback<Object> callback) {
+        add(handlerName, data, callback);
+      }
+    };
+  }
+
+  private void add(
+      String handlerName, Object data, WVJBWebView.WVJBResponseCallback<Object> callback) {
+    if (data instanceof WVJBRawData) {
+      try {
+        data = ((WVJBRawData) data).decodeAsCollections();
+      } catch (JSONException e) {
+        Log.w(TAG, "Could not decode the data of a " + handlerName + " call: " + e);
+        fail(callback, "invalidData", e.getMessage());
+        return;
+      }
+    }
+    Integer callbackId = callback == null ? null : ++lastCallbackId;
+    pendingCalls.add(new Call(handlerName, data, callbackId, callback));
+    if (!flushScheduled) {
+      flushScheduled = true;
+      Choreographer.getInstance().postFrameCallback(flushCallback);
+    }
+  }
+
+  private void flush() {
+    flushScheduled = false;
+    if (pendingCalls.isEmpty()) {
+      return;
+    }
+    final ArrayList<Call> calls = pendingCalls;
+    pendingCalls = new ArrayList<>();
+    List<Map<String, Object>> arguments = new ArrayList<>(calls.size());
+    for (Call call : calls) {
+      Map<String, Object> map = new HashMap<>();
+      map.put("handlerName", call.handlerName);
+      map.put("data", call.data);
+      map.put("callbackId", call.callbackId);
+      arguments.add(map);
+    }
+    methodChannel.invokeMethod(
+        "onJsBridgeCalls",
+        arguments,
+        new MethodChannel.Result() {
+          @Override
+          public void success(Object o) {
+            Map<?, ?> reply = o instanceof Map ? (Map<?, ?>) o : Collections.emptyMap();
+            Map<?, ?> results = asMap(reply.get("results"));
+            Map<?, ?> errors = asMap(reply.get("errors"));
+            for (Call call : calls) {
+              if (call.callback == null) {
+                continue;
+              }
+              Map<?, ?> error = asMap(errors.get(call.callbackId));
+              if (!error.isEmpty()) {
+                fail(call.callback, (String) error.get("code"), (String) error.get("message"));
+              } else {
+                call.callback.onResult(results.get(call.callbackId));
+              }
+            }
+          }
+
+          @Override
+          public void error(String errorCode, String errorMessage, Object errorDetails) {
+            for (Call call : calls) {
+              fail(call.callback, errorCode, errorMessage);
+            }
+          }
+
+          @Override
+          public void notImplemented() {
+            for (Call call : calls) {
+              fail(call.callback, "notImplemented", "onJsBridgeCalls is not handled by Dart");
+            }
+          }
+        });
+  }
+
+  private static Map<?, ?> asMap(Object value) {
+    return value instanceof Map ? (Map<?, ?>) value : Collections.emptyMap();
+  }
+
+  private static void fail(
+      WVJBWebView.WVJBResponseCallback<Object> callback, String code, String message) {
+    if (callback instanceof WVJBWebView.WVJBErrorResponseCallback) {
+      ((WVJBWebView.WVJBErrorResponseCallback<Object>) callback).onError(code, message);
+    } else if (callback != null) {
+      callback.onResult(null);
+    }
+  }
+}
@@ -0,0 +1,118 @@
+// Copyright 2013 The Flutter Authors. All rights reserved.
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package io.flutter.plugins.webviewflutter;
+
+import android.os.SystemClock;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Remembers the navigation delegate's decisions for main frame URLs for a while.
+ *
+ * <p>Only decisions to navigate are remembered unless denials are cached too, a delegate that
+ * blocks a URL for a moment, for example while a login is pending, then still gets asked again.
+ * URLs are compared without their fragment and with the scheme and host in lower case. Entries
+ * expire after the time to live and the least recently used entry is dropped when the cache is
+ * full. All methods run on the main thread.
+ */
+class NavigationDecisionCache {
+  private final int maxEntries;
+  private final long ttlMillis;
+  private final boolean cacheDenials;
+  private long hitCount = 0;
+  private long missCount = 0;
+
+  private static class Entry {
+    final boolean allow;
+    final long expiresMillis;
+
+    Entry(boolean allow, long expiresMillis) {
+      this.allow = allow;
+      this.expiresMillis = expiresMillis;
+    }
+  }
+
+  private final LinkedHashMap<String, Entry> entries;
+
+  NavigationDecisionCache(final int maxEntries, long ttlMillis, boolean cacheDenials) {
+    this.maxEntries = Math.max(1, maxEntries);
+    this.ttlMillis = Math.max(0, ttlMillis);
+    this.cacheDenials = cacheDenials;
+    entries =
+        new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > NavigationDecisionCache.this.maxEntries;
+          }
+        };
+  }
+
+  /** Returns the cached decision for the url, or null if there is none or it expired. */
+  Boolean get(String url) {
+    String key = normalize(url);
+    Entry entry = entries.get(key);
+    if (entry == null) {
+      missCount++;
+      return null;
+    }
+    if (SystemClock.elapsedRealtime() >= entry.expiresMillis) {
+      entries.remove(key);
+      missCount++;
+      return null;
+    }
+    hitCount++;
+    return entry.allow;
+  }
+
+  /** Remembers the decision, a denial only if denials are cached. */
+  void put(String url, boolean allow) {
+    if (!allow && !cacheDenials) {
+      return;
+    }
+    entries.put(normalize(url), new Entry(allow, SystemClock.elapsedRealtime() + ttlMillis));
+  }
+
+  /** Drops all decisions and returns how many there were. */
+  int clear() {
+    int size = entries.size();
+    entries.clear();
+    return size;
+  }
+
+  Map<String, Object> toMap() {
+    Map<String, Object> map = new HashMap<>();
+    map.put("size", entries.size());
+    map.put("maxEntries", maxEntries);
+    map.put("ttlMillis", ttlMillis);
+    map.put("cacheDenials", cacheDenials);
+    map.put("hits", hitCount);
+    map.put("misses", missCount);
+    return map;
+  }
+
+  // drops the fragment and lower cases everything up to the path, which is case insensitive
+  static String normalize(String url) {
+    int fragment = url.indexOf('#');
+    if (fragment >= 0) {
+      url = url.substring(0, fragment);
+    }
+    int authority = url.indexOf("://");
+    if (authority < 0) {
+      return url;
+    }
+    int pathStart = url.length();
+    for (int i = authority + 3; i < url.length(); i++) {
+      char c = url.charAt(i);
+      if (c == '/' || c == '?') {
+        pathStart = i;
+        break;
+      }
+    }
+    return url.substring(0, pathStart).toLowerCase(Locale.ROOT) + url.substring(pathStart);
+  }
+}
@@ -0,0 +1,180 @@
+// Copyright 2013 The Flutter Authors. All rights reserved.
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package io.flutter.plugins.webviewflutter;
+
+import android.net.Uri;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Allow and deny rules that decide navigations without asking Dart.
+ *
+ * <p>A rule matches a URL when its scheme, host and path all match. A rule without schemes,
+ * host suffixes or path prefixes matches any value of that part. Host suffixes match whole labels,
+ * so `example.com` matches `example.com` and `www.example.com` but not `badexample.com`. When
+ * several rules match, the first one in the list decides. Host suffixes are kept in a trie of
+ * reversed labels, so only the rules for the URL's host and its parent domains are checked.
+ * All methods run on the main thread.
+ */
+class NavigationRules {
+  // results of match
+  static final int NO_MATCH = 0;
+  static final int ALLOW = 1;
+  static final int DENY = 2;
+
+  private final Rule[] rules;
+  private final TrieNode hosts = new TrieNode();
+  // indices of the rules without host suffixes
+  private final List<Integer> anyHostRules = new ArrayList<>();
+  private final long[] hits;
+  private long unmatched = 0;
+
+  private static class Rule {
+    final boolean allow;
+    final Set<String> schemes;
+    final List<String> pathPrefixes;
+
+    Rule(boolean allow, Set<String> schemes, List<String> pathPrefixes) {
+      this.allow = allow;
+      this.schemes = schemes;
+      this.pathPrefixes = pathPrefixes;
+    }
+
+    boolean matches(String scheme, String path) {
+      if (!schemes.isEmpty() && !schemes.contains(scheme)) {
+        return false;
+      }
+      if (pathPrefixes.isEmpty()) {
+        return true;
+      }
+      for (String prefix : pathPrefixes) {
+        if (path.startsWith(prefix)) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  private static class TrieNode {
+    final Map<String, TrieNode> children = new HashMap<>();
+    // indices of the rules whose host suffix ends at this node, in list order
+    final List<Integer> rules = new ArrayList<>();
+  }
+
+  /**
+   * Compiles rules sent from Dart, each a map with a `decision` of "allow" or "deny" and optional
+   * `schemes`, `hostSuffixes` and `pathPrefixes` lists.
+   */
+  @SuppressWarnings("unchecked")
+  NavigationRules(List<Map<String, Object>> ruleMaps) {
+    rules = new Rule[ruleMaps.size()];
+    hits = new long[rules.length];
+    for (int i = 0; i < rules.length; i++) {
+      Map<String, Object> ruleMap = ruleMaps.get(i);
+      String decision = (String) ruleMap.get("decision");
+      boolean allow;
+      if ("allow".equals(decision)) {
+        allow = true;
+      } else if ("deny".equals(decision)) {
+        allow = false;
+      } else {
+        throw new IllegalArgumentException("Unknown navigation rule decision: " + decision);
+      }
+      Set<String> schemes = new HashSet<>();
+      List<String> schemeList = (List<String>) ruleMap.get("schemes");
+      if (schemeList != null) {
+        for (String scheme : schemeList) {
+          schemes.add(scheme.toLowerCase(Locale.ROOT));
+        }
+      }
+      List<String> pathPrefixes = (List<String>) ruleMap.get("pathPrefixes");
+      rules[i] =
+          new Rule(
+              allow,
+              schemes,
+              pathPrefixes != null ? pathPrefixes : new ArrayList<String>());
+      List<String> hostSuffixes = (List<String>) ruleMap.get("hostSuffixes");
+      if (hostSuffixes == null || hostSuffixes.isEmpty()) {
+        anyHostRules.add(i);
+        continue;
+      }
+      for (String suffix : hostSuffixes) {
+        TrieNode node = hosts;
+        String[] labels = suffix.toLowerCase(Locale.ROOT).split("\\.");
+        for (int j = labels.length - 1; j >= 0; j--) {
+          TrieNode child = node.children.get(labels[j]);
+          if (child == null) {
+            child = new TrieNode();
+            node.children.put(labels[j], child);
+          }
+          node = child;
+        }
+        node.rules.add(i);
+      }
+    }
+  }
+
+  /** Returns {@link #ALLOW} or {@link #DENY} for the first rule that matches, or {@link #NO_MATCH}. */
+  int match(String url) {
+    Uri uri = Uri.parse(url);
+    return match(uri.getScheme(), uri.getHost(), uri.getPath());
+  }
+
+  // the parts of a parsed url, each may be null
+  int match(String scheme, String host, String path) {
+    scheme = scheme != null ? scheme.toLowerCase(Locale.ROOT) : "";
+    host = host != null ? host.toLowerCase(Locale.ROOT) : "";
+    path = path != null ? path : "";
+    int first = firstMatch(anyHostRules, Integer.MAX_VALUE, scheme, path);
+    if (!host.isEmpty()) {
+      String[] labels = host.split("\\.");
+      TrieNode node = hosts;
+      for (int j = labels.length - 1; j >= 0 && node != null; j--) {
+        node = node.children.get(labels[j]);
+        if (node != null) {
+          first = firstMatch(node.rules, first, scheme, path);
+        }
+      }
+    }
+    if (first == Integer.MAX_VALUE) {
+      unmatched++;
+      return NO_MATCH;
+    }
+    hits[first]++;
+    return rules[first].allow ? ALLOW : DENY;
+  }
+
+  // the lowest index in candidates below the given one whose rule matches
+  private int firstMatch(List<Integer> candidates, int first, String scheme, String path) {
+    for (int index : candidates) {
+      if (index >= first) {
+        break;
+      }
+      if (rules[index].matches(scheme, path)) {
+        return index;
+      }
+    }
+    return first;
+  }
+
+  /** Returns the number of navigations each rule decided, in list order, and the unmatched ones. */
+  Map<String, Object> getStats() {
+    List<Long> ruleHits = new ArrayList<>(hits.length);
+    for (long count : hits) {
+      ruleHits.add(count);
+    }
+    Map<String, Object> stats = new HashMap<>();
+    stats.put("hits", ruleHits);
+    stats.put("unmatched", unmatched);
+    return stats;
+  }
+}
@@ -17,17 +17,25 @@ import java.util.Map;
 public final class WebViewFactory extends PlatformViewFactory {
   private final BinaryMessenger messenger;
   private final View containerView;
+  private final FlutterWebViewPool webViewPool;
+  private final WebViewMemoryManager memoryManager;
 
-  WebViewFactory(BinaryMessenger messenger, View containerView) {
+  WebViewFactory(
+      BinaryMessenger messenger,
+      View containerView,
+      FlutterWebViewPool webViewPool,
+      WebViewMemoryManager memoryManager) {
     super(StandardMessageCodec.INSTANCE);
     this.messenger = messenger;
     this.containerView = containerView;
+    this.webViewPool = webViewPool;
+    this.memoryManager = memoryManager;
   }
 
   @SuppressWarnings("unchecked")
   @Override
   public PlatformView create(Context context, int id, Object args) {
     Map<String, Object> params = (Map<String, Object>) args;
-    return new FlutterWebView(context, messenger, id, params, containerView);
+    return new FlutterWebView(context, messenger, id, params, containerView, webViewPool, memoryManager);
   }
 }
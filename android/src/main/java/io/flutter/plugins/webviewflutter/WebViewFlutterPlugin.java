@@ -18,6 +18,34 @@ import io.flutter.plugin.common.BinaryMessenger;
 public class WebViewFlutterPlugin implements FlutterPlugin {
 
   private FlutterCookieManager flutterCookieManager;
+  private FlutterWebViewPool webViewPool;
+  private WebViewMemoryManager memoryManager;
+
+  private static int webViewPoolSize = 0;
+  private static boolean webViewPoolUsesHybridComposition = true;
+  private static int maxRecycledWebViews = FlutterWebViewPool.DEFAULT_MAX_RECYCLED;
+
+  /**
+   * Creates {@code size} web views ahead of time once the plugin is registered, in main looper
+   * idle time, and hands them out to the web views created later.
+   *
+   * <p>Pooled web views are only used for web views created with the same {@code
+   * usesHybridComposition} value, which is true for {@code SurfaceAndroidWebView}. Must be called
+   * before the plugin is registered, for example in {@code Application.onCreate}. Hit and miss
+   * counts and warm-up times are available from Dart through {@code WebViewPool.getStats}.
+   */
+  public static void setWebViewPoolSize(int size, boolean usesHybridComposition) {
+    webViewPoolSize = size;
+    webViewPoolUsesHybridComposition = usesHybridComposition;
+  }
+
+  /**
+   * Limits how many disposed web views created with the {@code recycleOnDispose} platform option
+   * are kept for reuse, the default is 2. Must be called before the plugin is registered.
+   */
+  public static void setMaxRecycledWebViews(int count) {
+    maxRecycledWebViews = count;
+  }
 
   /**
    * Add an instance of this to {@link io.flutter.embedding.engine.plugins.PluginRegistry} to
@@ -43,26 +71,51 @@ public class WebViewFlutterPlugin implements FlutterPlugin {
    */
   @SuppressWarnings("deprecation")
   public static void registerWith(io.flutter.plugin.common.PluginRegistry.Registrar registrar) {
+    FlutterWebViewPool webViewPool =
+        new FlutterWebViewPool(
+            registrar.messenger(), registrar.context().getApplicationContext(), registrar.view());
+    WebViewMemoryManager memoryManager =
+        new WebViewMemoryManager(
+            registrar.messenger(), registrar.context().getApplicationContext(), webViewPool);
     registrar
         .platformViewRegistry()
         .registerViewFactory(
             "plugins.flutter.io/webview",
-            new WebViewFactory(registrar.messenger(), registrar.view()));
+            new WebViewFactory(
+                registrar.messenger(), registrar.view(), webViewPool, memoryManager));
     new FlutterCookieManager(registrar.messenger());
+    webViewPool.setSize(webViewPoolSize, webViewPoolUsesHybridComposition);
+    webViewPool.setMaxRecycled(maxRecycledWebViews);
   }
 
   @Override
   public void onAttachedToEngine(FlutterPluginBinding binding) {
     BinaryMessenger messenger = binding.getBinaryMessenger();
+    webViewPool =
+        new FlutterWebViewPool(
+            messenger, binding.getApplicationContext(), /*containerView=*/ null);
+    memoryManager =
+        new WebViewMemoryManager(messenger, binding.getApplicationContext(), webViewPool);
     binding
         .getPlatformViewRegistry()
         .registerViewFactory(
-            "plugins.flutter.io/webview", new WebViewFactory(messenger, /*containerView=*/ null));
+            "plugins.flutter.io/webview",
+            new WebViewFactory(messenger, /*containerView=*/ null, webViewPool, memoryManager));
     flutterCookieManager = new FlutterCookieManager(messenger);
+    webViewPool.setSize(webViewPoolSize, webViewPoolUsesHybridComposition);
+    webViewPool.setMaxRecycled(maxRecycledWebViews);
   }
 
   @Override
   public void onDetachedFromEngine(FlutterPluginBinding binding) {
+    if (memoryManager != null) {
+      memoryManager.dispose();
+      memoryManager = null;
+    }
+    if (webViewPool != null) {
+      webViewPool.dispose();
+      webViewPool = null;
+    }
     if (flutterCookieManager == null) {
       return;
     }
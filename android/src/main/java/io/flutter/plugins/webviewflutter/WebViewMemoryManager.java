@@ -0,0 +1,183 @@
+// Copyright 2013 The Flutter Authors. All rights reserved.
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package io.flutter.plugins.webviewflutter;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.SystemClock;
+import android.webkit.WebView;
+
+import io.flutter.plugin.common.BinaryMessenger;
+import io.flutter.plugin.common.MethodCall;
+import io.flutter.plugin.common.MethodChannel;
+import io.flutter.plugin.common.MethodChannel.MethodCallHandler;
+import io.flutter.plugin.common.MethodChannel.Result;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Releases web view memory step by step as the system runs lower on memory.
+ *
+ * <p>The running levels grow while the app is in the foreground and the background levels from
+ * {@link ComponentCallbacks2#TRIM_MEMORY_BACKGROUND} grow once it is cached, {@link
+ * ComponentCallbacks2#TRIM_MEMORY_UI_HIDDEN} in between only means the UI went out of sight. On
+ * every pressure level, from {@link ComponentCallbacks2#TRIM_MEMORY_RUNNING_MODERATE}, the
+ * in-memory resource cache and the remembered navigation decisions of the live web views are
+ * cleared. On {@link ComponentCallbacks2#TRIM_MEMORY_RUNNING_LOW}, {@link
+ * ComponentCallbacks2#TRIM_MEMORY_RUNNING_CRITICAL} and the background levels all web views kept
+ * by the pool, recycled, preloaded and pre-created ones, are destroyed and the pool stops creating
+ * web views until the pressure has been gone for a while. On {@link
+ * ComponentCallbacks2#TRIM_MEMORY_RUNNING_CRITICAL}, the background levels and {@link
+ * ComponentCallbacks2#TRIM_MEMORY_UI_HIDDEN}, which releases nothing else, live web views that are
+ * hidden are paused right away, they resume when they are shown again. Each step adds to the
+ * counters and the most recent trims are kept with what every step released. All methods run on
+ * the main thread.
+ */
+class WebViewMemoryManager implements MethodCallHandler, ComponentCallbacks2 {
+  private static final int MAX_RECENT_TRIMS = 20;
+
+  private final MethodChannel methodChannel;
+  private final Context applicationContext;
+  private final FlutterWebViewPool webViewPool;
+  private final Set<FlutterWebView> webViews = new LinkedHashSet<>();
+  private final ArrayDeque<Map<String, Object>> recentTrims = new ArrayDeque<>();
+  private long clearCachesCount = 0;
+  private long releasePooledCount = 0;
+  private long pauseHiddenCount = 0;
+  private long decisionCacheEntriesCleared = 0;
+  private long recycledReleased = 0;
+  private long preloadedReleased = 0;
+  private long preCreatedReleased = 0;
+  private long webViewsPaused = 0;
+
+  WebViewMemoryManager(
+      BinaryMessenger messenger, Context applicationContext, FlutterWebViewPool webViewPool) {
+    this.applicationContext = applicationContext;
+    this.webViewPool = webViewPool;
+    methodChannel = new MethodChannel(messenger, "plugins.flutter.io/webview_memory");
+    methodChannel.setMethodCallHandler(this);
+    applicationContext.registerComponentCallbacks(this);
+  }
+
+  @Override
+  public void onMethodCall(MethodCall methodCall, Result result) {
+    switch (methodCall.method) {
+      case "getStats":
+        result.success(getStats());
+        break;
+      default:
+        result.notImplemented();
+    }
+  }
+
+  void add(FlutterWebView webView) {
+    webViews.add(webView);
+  }
+
+  void remove(FlutterWebView webView) {
+    webViews.remove(webView);
+  }
+
+  @Override
+  public void onTrimMemory(int level) {
+    trim(level);
+  }
+
+  @Override
+  public void onLowMemory() {
+    trim(TRIM_MEMORY_COMPLETE);
+  }
+
+  @Override
+  public void onConfigurationChanged(Configuration configuration) {}
+
+  private void trim(int level) {
+    if (level < TRIM_MEMORY_RUNNING_MODERATE) {
+      return;
+    }
+    boolean uiHidden = level == TRIM_MEMORY_UI_HIDDEN;
+    boolean background = level >= TRIM_MEMORY_BACKGROUND;
+    long now = SystemClock.elapsedRealtime();
+    Map<String, Object> trim = new HashMap<>();
+    trim.put("level", level);
+    trim.put("timeMillis", now);
+    trim.put("liveWebViews", webViews.size());
+
+    if (!uiHidden) {
+      // the resource cache is shared by all web views, clearing it once is enough
+      if (!webViews.isEmpty()) {
+        ((WebView) webViews.iterator().next().getView()).clearCache(false);
+      }
+      int decisions = 0;
+      for (FlutterWebView webView : webViews) {
+        decisions += webView.clearNavigationDecisionCache();
+      }
+      clearCachesCount++;
+      decisionCacheEntriesCleared += decisions;
+      trim.put("decisionCacheEntriesCleared", decisions);
+    }
+
+    if ((level == TRIM_MEMORY_RUNNING_LOW || level == TRIM_MEMORY_RUNNING_CRITICAL || background)
+        && webViewPool != null) {
+      int recycled = webViewPool.trimRecycled(0);
+      int preloaded = webViewPool.trimPreloaded(0);
+      // refilling the pool right away would take the memory back
+      webViewPool.pauseWarmUp(now);
+      int preCreated = webViewPool.trim(0);
+      releasePooledCount++;
+      recycledReleased += recycled;
+      preloadedReleased += preloaded;
+      preCreatedReleased += preCreated;
+      trim.put("recycledReleased", recycled);
+      trim.put("preloadedReleased", preloaded);
+      trim.put("preCreatedReleased", preCreated);
+    }
+
+    if (level == TRIM_MEMORY_RUNNING_CRITICAL || uiHidden || background) {
+      int paused = 0;
+      for (FlutterWebView webView : webViews) {
+        if (webView.pauseIfHidden()) {
+          paused++;
+        }
+      }
+      pauseHiddenCount++;
+      webViewsPaused += paused;
+      trim.put("webViewsPaused", paused);
+    }
+
+    if (recentTrims.size() >= MAX_RECENT_TRIMS) {
+      recentTrims.poll();
+    }
+    recentTrims.add(trim);
+  }
+
+  /** Returns how often each step ran, what the steps released in total, and the recent trims. */
+  Map<String, Object> getStats() {
+    Map<String, Object> stats = new HashMap<>();
+    stats.put("liveWebViews", webViews.size());
+    stats.put("clearCachesCount", clearCachesCount);
+    stats.put("releasePooledCount", releasePooledCount);
+    stats.put("pauseHiddenCount", pauseHiddenCount);
+    stats.put("decisionCacheEntriesCleared", decisionCacheEntriesCleared);
+    stats.put("recycledReleased", recycledReleased);
+    stats.put("preloadedReleased", preloadedReleased);
+    stats.put("preCreatedReleased", preCreatedReleased);
+    stats.put("webViewsPaused", webViewsPaused);
+    stats.put("recentTrims", new ArrayList<>(recentTrims));
+    return stats;
+  }
+
+  void dispose() {
+    applicationContext.unregisterComponentCallbacks(this);
+    methodChannel.setMethodCallHandler(null);
+    webViews.clear();
+  }
+}
@@ -0,0 +1,302 @@
+// Copyright 2013 The Flutter Authors. All rights reserved.
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package io.flutter.plugins.webviewflutter;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.view.View;
+import android.view.ViewTreeObserver;
+import android.webkit.WebView;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pauses web views that are not visible and resumes them when they are shown again.
+ *
+ * <p>A web view counts as hidden while it is detached from its window, while it or one of its
+ * parents is not visible, or while the Flutter view hosting it is detached. Once it has been hidden
+ * for its grace period it is paused with {@link WebView#onPause}. JavaScript timers are shared by
+ * all web views of the process, so they are paused with {@link WebView#pauseTimers} only while every
+ * tracked web view is paused and no untracked web view loading off screen holds them, which is why
+ * one tracker serves all plugin instances. Dart can force a web view to stay resumed or paused. All
+ * methods run on the main thread.
+ */
+class WebViewVisibilityTracker {
+  // overrides, the index of the Dart WebViewLifecycleOverride value
+  static final int AUTOMATIC = 0;
+  static final int RESUMED = 1;
+  static final int PAUSED = 2;
+
+  private static WebViewVisibilityTracker instance;
+
+  private final Handler handler = new Handler(Looper.getMainLooper());
+  private final List<Entry> entries = new ArrayList<>();
+  private boolean timersPaused = false;
+  // web views loading off screen, preloaded or recycled, that need timers running
+  private int timerHolds = 0;
+  private int timersPauseCount = 0;
+  // wall time and process CPU time spent with timers paused and running, up to the last change
+  private long timersChangedMillis = SystemClock.elapsedRealtime();
+  private long timersChangedCpuMillis = Process.getElapsedCpuTime();
+  private long timersPausedMillis = 0;
+  private long timersRunningMillis = 0;
+  private long cpuMillisWhileTimersPaused = 0;
+  private long cpuMillisWhileTimersRunning = 0;
+
+  static WebViewVisibilityTracker getInstance() {
+    if (instance == null) {
+      instance = new WebViewVisibilityTracker();
+    }
+    return instance;
+  }
+
+  /** The state of one tracked web view. */
+  class Entry
+      implements View.OnAttachStateChangeListener,
+          ViewTreeObserver.OnGlobalLayoutListener,
+          Runnable {
+    final WebView webView;
+    // negative when the web view is not paused automatically
+    private long graceMillis = -1;
+    private int override = AUTOMATIC;
+    private boolean attached;
+    private boolean hostAttached = true;
+    private boolean visible;
+    private boolean hiddenForGracePeriod = false;
+    private boolean paused = false;
+    private int pauseCount = 0;
+    private long pausedSinceMillis;
+    private long pausedMillis = 0;
+
+    private Entry(WebView webView) {
+      this.webView = webView;
+      attached = webView.getWindowToken() != null;
+    }
+
+    @Override
+    public void onViewAttachedToWindow(View view) {
+      attached = true;
+      view.getViewTreeObserver().addOnGlobalLayoutListener(this);
+      refresh(this);
+    }
+
+    @Override
+    public void onViewDetachedFromWindow(View view) {
+      attached = false;
+      view.getViewTreeObserver().removeOnGlobalLayoutListener(this);
+      refresh(this);
+    }
+
+    // visibility changes of the web view and its parents lay out the window again
+    @Override
+    public void onGlobalLayout() {
+      refresh(this);
+    }
+
+    // the grace period ended
+    @Override
+    public void run() {
+      hiddenForGracePeriod = true;
+      apply(this);
+    }
+  }
+
+  /** Starts tracking the web view, which is not paused automatically until a grace period is set. */
+  Entry add(WebView webView) {
+    Entry entry = new Entry(webView);
+    entries.add(entry);
+    webView.addOnAttachStateChangeListener(entry);
+    if (entry.attached) {
+      webView.getViewTreeObserver().addOnGlobalLayoutListener(entry);
+    }
+    entry.visible = isVisible(entry);
+    apply(entry);
+    return entry;
+  }
+
+  /** Stops tracking the web view and leaves it resumed. */
+  void remove(Entry entry) {
+    handler.removeCallbacks(entry);
+    entry.webView.removeOnAttachStateChangeListener(entry);
+    if (entry.attached) {
+      entry.webView.getViewTreeObserver().removeOnGlobalLayoutListener(entry);
+    }
+    entry.override = RESUMED;
+    apply(entry);
+    entries.remove(entry);
+    updateTimers();
+  }
+
+  /** Pauses the web view once it has been hidden for `graceMillis`, never when negative. */
+  void setGraceMillis(Entry entry, long graceMillis) {
+    entry.graceMillis = graceMillis;
+    restartGracePeriod(entry);
+    apply(entry);
+  }
+
+  /** Keeps the web view resumed or paused whatever its visibility, or back to automatic. */
+  void setOverride(Entry entry, int override) {
+    if (override < AUTOMATIC || override > PAUSED) {
+      throw new IllegalArgumentException("Unknown web view lifecycle override: " + override);
+    }
+    entry.override = override;
+    apply(entry);
+  }
+
+  /**
+   * Pauses the web view right away if it is hidden and not forced to stay resumed, without waiting
+   * for the grace period. It is resumed as usual once it is shown. Returns whether it was paused.
+   */
+  boolean pauseIfHidden(Entry entry) {
+    if (entry.visible || entry.paused || entry.override != AUTOMATIC) {
+      return false;
+    }
+    handler.removeCallbacks(entry);
+    entry.hiddenForGracePeriod = true;
+    apply(entry);
+    return true;
+  }
+
+  /**
+   * Keeps JavaScript timers running for a web view that loads off screen without being tracked,
+   * until {@link #releaseTimers} is called for it.
+   */
+  void holdTimers() {
+    timerHolds++;
+    updateTimers();
+  }
+
+  void releaseTimers() {
+    if (timerHolds > 0) {
+      timerHolds--;
+    }
+    updateTimers();
+  }
+
+  /** Called when the Flutter view the web view is displayed in is attached or detached. */
+  void setHostAttached(Entry entry, boolean hostAttached) {
+    entry.hostAttached = hostAttached;
+    refresh(entry);
+  }
+
+  private boolean isVisible(Entry entry) {
+    return entry.attached
+        && entry.hostAttached
+        && entry.webView.isShown()
+        && entry.webView.getWindowVisibility() == View.VISIBLE;
+  }
+
+  private void refresh(Entry entry) {
+    boolean visible = isVisible(entry);
+    if (visible == entry.visible) {
+      return;
+    }
+    entry.visible = visible;
+    restartGracePeriod(entry);
+    apply(entry);
+  }
+
+  private void restartGracePeriod(Entry entry) {
+    handler.removeCallbacks(entry);
+    entry.hiddenForGracePeriod = false;
+    if (!entry.visible && entry.graceMillis >= 0) {
+      handler.postDelayed(entry, entry.graceMillis);
+    }
+  }
+
+  private void apply(Entry entry) {
+    boolean pause =
+        entry.override == PAUSED
+            || (entry.override == AUTOMATIC && !entry.visible && entry.hiddenForGracePeriod);
+    if (pause != entry.paused) {
+      entry.paused = pause;
+      long now = SystemClock.elapsedRealtime();
+      if (pause) {
+        entry.webView.onPause();
+        entry.pauseCount++;
+        entry.pausedSinceMillis = now;
+      } else {
+        entry.webView.onResume();
+        entry.pausedMillis += now - entry.pausedSinceMillis;
+      }
+    }
+    updateTimers();
+  }
+
+  // timers are paused while every tracked web view is paused and nothing holds them
+  private void updateTimers() {
+    boolean pause = !entries.isEmpty() && timerHolds == 0;
+    for (Entry entry : entries) {
+      if (!entry.paused) {
+        pause = false;
+        break;
+      }
+    }
+    if (pause == timersPaused || entries.isEmpty()) {
+      return;
+    }
+    accumulateTimerTimes();
+    timersPaused = pause;
+    if (pause) {
+      entries.get(0).webView.pauseTimers();
+      timersPauseCount++;
+    } else {
+      entries.get(0).webView.resumeTimers();
+    }
+  }
+
+  private void accumulateTimerTimes() {
+    long now = SystemClock.elapsedRealtime();
+    long cpuNow = Process.getElapsedCpuTime();
+    if (timersPaused) {
+      timersPausedMillis += now - timersChangedMillis;
+      cpuMillisWhileTimersPaused += cpuNow - timersChangedCpuMillis;
+    } else {
+      timersRunningMillis += now - timersChangedMillis;
+      cpuMillisWhileTimersRunning += cpuNow - timersChangedCpuMillis;
+    }
+    timersChangedMillis = now;
+    timersChangedCpuMillis = cpuNow;
+  }
+
+  /**
+   * Returns the state and pause counters of the web view, and the time and process CPU time spent
+   * with timers paused and running.
+   *
+   * <p>The CPU time saved is estimated as the CPU time the process would have used while timers
+   * were paused at the rate it used while they were running, minus what it did use.
+   */
+  Map<String, Object> getStats(Entry entry) {
+    accumulateTimerTimes();
+    long now = SystemClock.elapsedRealtime();
+    Map<String, Object> stats = new HashMap<>();
+    stats.put("visible", entry.visible);
+    stats.put("paused", entry.paused);
+    stats.put("pauseCount", entry.pauseCount);
+    stats.put(
+        "pausedMillis",
+        entry.pausedMillis + (entry.paused ? now - entry.pausedSinceMillis : 0));
+    stats.put("timersPaused", timersPaused);
+    stats.put("timersPauseCount", timersPauseCount);
+    stats.put("timerHolds", timerHolds);
+    stats.put("timersPausedMillis", timersPausedMillis);
+    stats.put("timersRunningMillis", timersRunningMillis);
+    stats.put("cpuMillisWhileTimersPaused", cpuMillisWhileTimersPaused);
+    stats.put("cpuMillisWhileTimersRunning", cpuMillisWhileTimersRunning);
+    long saved = 0;
+    if (timersRunningMillis > 0) {
+      saved =
+          timersPausedMillis * cpuMillisWhileTimersRunning / timersRunningMillis
+              - cpuMillisWhileTimersPaused;
+    }
+    stats.put("estimatedCpuMillisSaved", Math.max(0, saved));
+    return stats;
+  }
+}
@@ -0,0 +1,175 @@
+package io.flutter.plugins.webviewflutter.view;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counters and histograms describing the traffic of one {@link WVJBWebView} bridge.
+ *
+ * <p>All methods are safe to call from any thread. {@link #toMap} returns a snapshot made only of
+ * maps, lists, strings and numbers so it can be sent over a platform channel as is.
+ */
+final class WVJBBridgeStats {
+  private static final long[] LATENCY_BOUNDS_MILLIS =
+      {1, 2, 4, 8, 16, 32, 64, 128, 256, 512, 1024, 2048, 4096, 8192};
+  private static final long[] SIZE_BOUNDS_CHARS =
+      {64, 256, 1024, 4096, 16384, 65536, 262144, 1048576, 4194304};
+
+  private final Map<String, HandlerStats> handlers = new HashMap<>();
+  private final Histogram incomingSizes = new Histogram(SIZE_BOUNDS_CHARS);
+  private final Histogram outgoingSizes = new Histogram(SIZE_BOUNDS_CHARS);
+  private final Histogram startupQueueMillis = new Histogram(LATENCY_BOUNDS_MILLIS);
+  private int startupQueueDepth = 0;
+  private int maxStartupQueueDepth = 0;
+  private long parseErrors = 0;
+  private long handlerErrors = 0;
+  private long unknownHandlerCalls = 0;
+
+  /**
+   * A bucketed histogram, bucket i counts values up to bounds[i] and the last bucket counts
+   * everything above the last bound.
+   */
+  private static final class Histogram {
+    private final long[] bounds;
+    private final long[] counts;
+    private long count = 0;
+    private long sum = 0;
+    private long max = 0;
+
+    Histogram(long[] bounds) {
+      this.bounds = bounds;
+      this.counts = new long[bounds.length + 1];
+    }
+
+    void record(long value) {
+      int bucket = 0;
+      while (bucket < bounds.length && value > bounds[bucket]) {
+        bucket++;
+      }
+      counts[bucket]++;
+      count++;
+      sum += value;
+      if (value > max) {
+        max = value;
+      }
+    }
+
+    Map<String, Object> toMap() {
+      Map<String, Object> map = new HashMap<>();
+      List<Long> boundList = new ArrayList<>(bounds.length);
+      for (long bound : bounds) {
+        boundList.add(bound);
+      }
+      List<Long> countList = new ArrayList<>(counts.length);
+      for (long bucketCount : counts) {
+        countList.add(bucketCount);
+      }
+      map.put("bounds", boundList);
+      map.put("counts", countList);
+      map.put("count", count);
+      map.put("sum", sum);
+      map.put("max", max);
+      return map;
+    }
+  }
+
+  private static final class HandlerStats {
+    // calls from javascript to the native handler
+    long jsCalls = 0;
+    final Histogram handlerMillis = new Histogram(LATENCY_BOUNDS_MILLIS);
+    // calls from java to the javascript handler
+    long nativeCalls = 0;
+    final Histogram roundTripMillis = new Histogram(LATENCY_BOUNDS_MILLIS);
+
+    Map<String, Object> toMap() {
+      Map<String, Object> map = new HashMap<>();
+      map.put("jsCalls", jsCalls);
+      map.put("handlerMillis", handlerMillis.toMap());
+      map.put("nativeCalls", nativeCalls);
+      map.put("roundTripMillis", roundTripMillis.toMap());
+      return map;
+    }
+  }
+
+  private HandlerStats handler(String handlerName) {
+    String key = handlerName == null ? "" : handlerName;
+    HandlerStats stats = handlers.get(key);
+    if (stats == null) {
+      stats = new HandlerStats();
+      handlers.put(key, stats);
+    }
+    return stats;
+  }
+
+  synchronized void recordIncoming(int size) {
+    incomingSizes.record(size);
+  }
+
+  synchronized void recordOutgoing(int size) {
+    outgoingSizes.record(size);
+  }
+
+  /**
+   * Records a javascript call of a native handler and how long the handler ran.
+   */
+  synchronized void recordHandlerCall(String handlerName, long handlerMillis) {
+    HandlerStats stats = handler(handlerName);
+    stats.jsCalls++;
+    stats.handlerMillis.record(handlerMillis);
+  }
+
+  synchronized void recordNativeCall(String handlerName) {
+    handler(handlerName).nativeCalls++;
+  }
+
+  /**
+   * Records the time from a native call of a javascript handler to its response.
+   */
+  synchronized void recordRoundTrip(String handlerName, long roundTripMillis) {
+    handler(handlerName).roundTripMillis.record(roundTripMillis);
+  }
+
+  synchronized void recordQueued() {
+    startupQueueDepth++;
+    if (startupQueueDepth > maxStartupQueueDepth) {
+      maxStartupQueueDepth = startupQueueDepth;
+    }
+  }
+
+  synchronized void recordDequeued(long queuedMillis) {
+    startupQueueDepth--;
+    startupQueueMillis.record(queuedMillis);
+  }
+
+  synchronized void recordParseError() {
+    parseErrors++;
+  }
+
+  synchronized void recordHandlerError() {
+    handlerErrors++;
+  }
+
+  synchronized void recordUnknownHandler() {
+    unknownHandlerCalls++;
+  }
+
+  synchronized Map<String, Object> toMap() {
+    Map<String, Object> handlerMaps = new HashMap<>();
+    for (Map.Entry<String, HandlerStats> entry : handlers.entrySet()) {
+      handlerMaps.put(entry.getKey(), entry.getValue().toMap());
+    }
+    Map<String, Object> map = new HashMap<>();
+    map.put("handlers", handlerMaps);
+    map.put("incomingSizeChars", incomingSizes.toMap());
+    map.put("outgoingSizeChars", outgoingSizes.toMap());
+    map.put("startupQueueDepth", startupQueueDepth);
+    map.put("maxStartupQueueDepth", maxStartupQueueDepth);
+    map.put("startupQueueMillis", startupQueueMillis.toMap());
+    map.put("parseErrors", parseErrors);
+    map.put("handlerErrors", handlerErrors);
+    map.put("unknownHandlerCalls", unknownHandlerCalls);
+    return map;
+  }
+}
@@ -0,0 +1,272 @@
+package io.flutter.plugins.webviewflutter.view;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+import androidx.collection.LongSparseArray;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Holds the callbacks of calls from java that are waiting for javascript to respond.
+ *
+ * <p>Callbacks are keyed by a primitive id, ids only grow so the oldest pending call is always the
+ * first entry. A callback leaves the registry when javascript responds, when its timeout passes,
+ * when the registry is over capacity, when its call could not be sent, when the document it was
+ * sent to goes away, or when the web view is reset or destroyed. Callbacks implementing
+ * {@link WVJBWebView.WVJBExpiringResponseCallback} are told about all but the first on the
+ * handler's thread.
+ */
+final class WVJBCallbackRegistry {
+  static final String CALLBACK_ID_PREFIX = "java_cb_";
+  static final int DEFAULT_MAX_PENDING_CALLBACKS = 1024;
+
+  private final Handler handler;
+  private final WVJBBridgeStats stats;
+  private final LongSparseArray<Entry> entries = new LongSparseArray<>();
+  private long lastId = 0;
+  private int maxPendingCallbacks = DEFAULT_MAX_PENDING_CALLBACKS;
+  private long timedOutCount = 0;
+  private long evictedCount = 0;
+  private long pageChangedCount = 0;
+  private long rejectedCount = 0;
+  private long cancelledCount = 0;
+
+  private final class Entry implements Runnable {
+    final long id;
+    final WVJBWebView.WVJBResponseCallback callback;
+    final String handlerName;
+    final long createdMillis = SystemClock.elapsedRealtime();
+    // the generation of the document the call was written to, -1 while it waits to be sent
+    int generation = -1;
+
+    Entry(long id, WVJBWebView.WVJBResponseCallback callback, String handlerName) {
+      this.id = id;
+      this.callback = callback;
+      this.handlerName = handlerName;
+    }
+
+    // runs when the timeout of the call passes
+    @Override
+    public void run() {
+      synchronized (WVJBCallbackRegistry.this) {
+        if (entries.get(id) != this) {
+          return;
+        }
+        entries.remove(id);
+        timedOutCount++;
+      }
+      notifyExpired(this, WVJBWebView.CALLBACK_TIMED_OUT);
+    }
+  }
+
+  WVJBCallbackRegistry(Handler handler, WVJBBridgeStats stats) {
+    this.handler = handler;
+    this.stats = stats;
+  }
+
+  /**
+   * Registers a callback and returns the id to send to javascript as the callbackId.
+   *
+   * @param timeoutMillis time to wait for the response, 0 or less to wait until the page changes.
+   */
+  String add(WVJBWebView.WVJBResponseCallback callback, long timeoutMillis, String handlerName) {
+    Entry entry;
+    Entry evicted = null;
+    synchronized (this) {
+      entry = new Entry(++lastId, callback, handlerName);
+      entries.append(entry.id, entry);
+      if (entries.size() > maxPendingCallbacks) {
+        evicted = entries.valueAt(0);
+        entries.removeAt(0);
+        evictedCount++;
+      }
+    }
+    if (timeoutMillis > 0) {
+      handler.postDelayed(entry, timeoutMillis);
+    }
+    if (evicted != null) {
+      notifyExpired(evicted, WVJBWebView.CALLBACK_EVICTED);
+    }
+    return CALLBACK_ID_PREFIX + entry.id;
+  }
+
+  /**
+   * Removes the callback javascript responded to.
+   *
+   * @return the callback, or null if it is unknown or already expired.
+   */
+  WVJBWebView.WVJBResponseCallback remove(String callbackId) {
+    long id = parseId(callbackId);
+    if (id < 0) {
+      return null;
+    }
+    Entry entry;
+    synchronized (this) {
+      entry = entries.get(id);
+      if (entry == null) {
+        return null;
+      }
+      entries.remove(id);
+    }
+    handler.removeCallbacks(entry);
+    stats.recordRoundTrip(entry.handlerName, SystemClock.elapsedRealtime() - entry.createdMillis);
+    return entry.callback;
+  }
+
+  /**
+   * Drops the callback of a call that could not be sent to javascript.
+   */
+  void reject(String callbackId) {
+    Entry entry;
+    synchronized (this) {
+      entry = entries.get(parseId(callbackId));
+      if (entry == null) {
+        return;
+      }
+      entries.remove(entry.id);
+      rejectedCount++;
+    }
+    notifyExpired(entry, WVJBWebView.CALLBACK_REJECTED);
+  }
+
+  /**
+   * Marks the call as written to the document of the given generation, it expires when a newer
+   * document replaces that one.
+   */
+  synchronized void markDispatched(String callbackId, int generation) {
+    Entry entry = entries.get(parseId(callbackId));
+    if (entry != null) {
+      entry.generation = generation;
+    }
+  }
+
+  /**
+   * Expires every call that was written to a document older than the given generation, calls
+   * still waiting to be sent are kept.
+   */
+  void expireDispatchedBefore(int generation) {
+    ArrayList<Entry> expired = new ArrayList<>();
+    synchronized (this) {
+      for (int i = entries.size() - 1; i >= 0; i--) {
+        Entry entry = entries.valueAt(i);
+        if (entry.generation >= 0 && entry.generation < generation) {
+          expired.add(entry);
+          entries.removeAt(i);
+        }
+      }
+      pageChangedCount += expired.size();
+    }
+    for (int i = expired.size() - 1; i >= 0; i--) {
+      notifyExpired(expired.get(i), WVJBWebView.CALLBACK_PAGE_CHANGED);
+    }
+  }
+
+  /**
+   * Expires the calls that were dropped before they were completely sent because a new document
+   * replaced the one they were written to.
+   */
+  void expireUnsent(List<String> callbackIds) {
+    ArrayList<Entry> expired = new ArrayList<>();
+    synchronized (this) {
+      for (int i = 0; i < callbackIds.size(); i++) {
+        long id = parseId(callbackIds.get(i));
+        Entry entry = entries.get(id);
+        if (entry != null) {
+          expired.add(entry);
+          entries.remove(id);
+        }
+      }
+      pageChangedCount += expired.size();
+    }
+    for (int i = 0; i < expired.size(); i++) {
+      notifyExpired(expired.get(i), WVJBWebView.CALLBACK_PAGE_CHANGED);
+    }
+  }
+
+  /**
+   * Expires every pending call, called on the handler's thread when the web view is reset or
+   * destroyed. The callbacks are told right away rather than through the handler, whose queue is
+   * cleared when the web view is reset.
+   */
+  void cancelAll() {
+    ArrayList<Entry> cancelled = new ArrayList<>();
+    synchronized (this) {
+      for (int i = 0; i < entries.size(); i++) {
+        cancelled.add(entries.valueAt(i));
+      }
+      entries.clear();
+      cancelledCount += cancelled.size();
+    }
+    for (int i = 0; i < cancelled.size(); i++) {
+      Entry entry = cancelled.get(i);
+      handler.removeCallbacks(entry);
+      if (entry.callback instanceof WVJBWebView.WVJBExpiringResponseCallback) {
+        ((WVJBWebView.WVJBExpiringResponseCallback) entry.callback)
+            .onExpired(WVJBWebView.CALLBACK_CANCELLED);
+      }
+    }
+  }
+
+  synchronized void setMaxPendingCallbacks(int maxPendingCallbacks) {
+    this.maxPendingCallbacks = Math.max(1, maxPendingCallbacks);
+  }
+
+  synchronized int size() {
+    return entries.size();
+  }
+
+  synchronized long getTimedOutCount() {
+    return timedOutCount;
+  }
+
+  synchronized long getEvictedCount() {
+    return evictedCount;
+  }
+
+  synchronized long getPageChangedCount() {
+    return pageChangedCount;
+  }
+
+  synchronized long getRejectedCount() {
+    return rejectedCount;
+  }
+
+  synchronized long getCancelledCount() {
+    return cancelledCount;
+  }
+
+  private void notifyExpired(final Entry entry, final int reason) {
+    handler.removeCallbacks(entry);
+    if (!(entry.callback instanceof WVJBWebView.WVJBExpiringResponseCallback)) {
+      return;
+    }
+    handler.post(new Runnable() {
+      @Override
+      public void run() {
+        ((WVJBWebView.WVJBExpiringResponseCallback) entry.callback).onExpired(reason);
+      }
+    });
+  }
+
+  // returns -1 for ids that were not created by this registry
+  private static long parseId(String callbackId) {
+    if (callbackId == null || !callbackId.startsWith(CALLBACK_ID_PREFIX)) {
+      return -1;
+    }
+    int length = callbackId.length();
+    if (length == CALLBACK_ID_PREFIX.length()) {
+      return -1;
+    }
+    long id = 0;
+    for (int i = CALLBACK_ID_PREFIX.length(); i < length; i++) {
+      char c = callbackId.charAt(i);
+      if (c < '0' || c > '9') {
+        return -1;
+      }
+      id = id * 10 + (c - '0');
+    }
+    return id;
+  }
+}
@@ -0,0 +1,253 @@
+package io.flutter.plugins.webviewflutter.view;
+
+import android.os.Handler;
+import android.view.Choreographer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Moves messages larger than the chunk threshold across the bridge in pieces.
+ *
+ * <p>Towards javascript a large message is cut into chunks and at most one threshold worth of text
+ * is delivered per main-thread frame, so a big payload never turns into one script that stalls
+ * rendering. Messages sent while a chunked message is on its way queue behind it to keep their
+ * order. From javascript, chunks arrive through {@code WVJBInterface.noticeChunk} and are joined
+ * here before the message is parsed.
+ *
+ * <p>The text queued towards javascript and the text of partly received messages may together not
+ * exceed the in-flight limit, messages that would go over it are rejected.
+ */
+final class WVJBChunkTransfer {
+  static final int DEFAULT_CHUNK_THRESHOLD = 64 * 1024;
+  static final int DEFAULT_MAX_IN_FLIGHT_CHARS = 32 * 1024 * 1024;
+
+  // results of send
+  static final int SEND_DIRECTLY = 0;
+  static final int QUEUED = 1;
+  static final int REJECTED = 2;
+
+  private final WVJBWebView webView;
+  private final Handler handler;
+  private final ArrayDeque<Outgoing> outgoing = new ArrayDeque<>();
+  private final Map<Integer, StringBuilder> incoming = new HashMap<>();
+  private volatile int chunkThreshold = DEFAULT_CHUNK_THRESHOLD;
+  private int maxInFlightChars = DEFAULT_MAX_IN_FLIGHT_CHARS;
+  private long outgoingChars = 0;
+  private long incomingChars = 0;
+  private int lastOutgoingId = 0;
+  private boolean frameScheduled = false;
+  private long sentChunkCount = 0;
+  private long sentChunkedMessageCount = 0;
+  private long receivedChunkCount = 0;
+  private long receivedChunkedMessageCount = 0;
+  private long rejectedOutgoingCount = 0;
+  private long rejectedIncomingCount = 0;
+
+  private static final class Outgoing {
+    final String json;
+    // 0 for a message that is evaluated whole
+    final int id;
+    final int chunkSize;
+    // of the call the message carries, null for other messages
+    final String callbackId;
+    int offset = 0;
+
+    Outgoing(String json, int id, int chunkSize, String callbackId) {
+      this.json = json;
+      this.id = id;
+      this.chunkSize = chunkSize;
+      this.callbackId = callbackId;
+    }
+  }
+
+  private final Choreographer.FrameCallback frameCallback = new Choreographer.FrameCallback() {
+    @Override
+    public void doFrame(long frameTimeNanos) {
+      sendNextChunks();
+    }
+  };
+
+  private final Runnable scheduleFrame = new Runnable() {
+    @Override
+    public void run() {
+      Choreographer.getInstance().postFrameCallback(frameCallback);
+    }
+  };
+
+  WVJBChunkTransfer(WVJBWebView webView, Handler handler) {
+    this.webView = webView;
+    this.handler = handler;
+  }
+
+  /**
+   * @param chunkThreshold messages longer than this many characters are sent in chunks of this
+   *                       size, 0 or less sends every message whole.
+   */
+  void setChunkThreshold(int chunkThreshold) {
+    this.chunkThreshold = Math.max(0, chunkThreshold);
+  }
+
+  int getChunkThreshold() {
+    return chunkThreshold;
+  }
+
+  synchronized void setMaxInFlightChars(int maxInFlightChars) {
+    this.maxInFlightChars = Math.max(1, maxInFlightChars);
+  }
+
+  /**
+   * Queues a message for javascript if it is over the threshold or earlier messages are still
+   * queued. Can be called from any thread.
+   *
+   * @return {@link #SEND_DIRECTLY} if the caller should evaluate the message itself,
+   * {@link #QUEUED} if it will be delivered in the coming frames, or {@link #REJECTED} if it does
+   * not fit within the in-flight limit.
+   * @param callbackId the callback id of the call the message carries, or null.
+   */
+  int send(String messageJSON, String callbackId) {
+    synchronized (this) {
+      int threshold = chunkThreshold;
+      boolean chunked = threshold > 0 && messageJSON.length() > threshold;
+      if (!chunked && outgoing.isEmpty()) {
+        return SEND_DIRECTLY;
+      }
+      if (outgoingChars + incomingChars + messageJSON.length() > maxInFlightChars) {
+        rejectedOutgoingCount++;
+        return REJECTED;
+      }
+      if (chunked) {
+        outgoing.add(new Outgoing(messageJSON, ++lastOutgoingId, threshold, callbackId));
+        sentChunkedMessageCount++;
+      } else {
+        outgoing.add(new Outgoing(messageJSON, 0, messageJSON.length(), callbackId));
+      }
+      outgoingChars += messageJSON.length();
+      if (frameScheduled) {
+        return QUEUED;
+      }
+      frameScheduled = true;
+    }
+    handler.post(scheduleFrame);
+    return QUEUED;
+  }
+
+  // runs on the main thread, evaluates up to one threshold worth of queued text
+  private void sendNextChunks() {
+    int threshold = chunkThreshold;
+    int budget = threshold > 0 ? threshold : Integer.MAX_VALUE;
+    int sent = 0;
+    while (sent < budget) {
+      Outgoing next;
+      int start;
+      int end;
+      synchronized (this) {
+        next = outgoing.peek();
+        if (next == null) {
+          frameScheduled = false;
+          return;
+        }
+        start = next.offset;
+        int length = next.json.length();
+        end = length;
+        if (next.id != 0) {
+          end = Math.min(start + next.chunkSize, length);
+          // never split a surrogate pair, each half would be replaced on the way to javascript
+          if (end < length && end - 1 > start && Character.isHighSurrogate(next.json.charAt(end - 1))) {
+            end--;
+          }
+          sentChunkCount++;
+        }
+        next.offset = end;
+        sent += end - start;
+        outgoingChars -= end - start;
+        if (end == length) {
+          outgoing.poll();
+        }
+      }
+      if (next.id == 0) {
+        webView.deliverToJavascript(next.json, next.callbackId);
+      } else {
+        webView.deliverChunkToJavascript(
+            next.id, next.json, start, end, end == next.json.length(), next.callbackId);
+      }
+    }
+    Choreographer.getInstance().postFrameCallback(frameCallback);
+  }
+
+  /**
+   * Called on the javascript bridge thread with one chunk of a message from javascript. The
+   * message is handed to the web view once its last chunk arrived.
+   *
+   * @return false if the message was dropped because it went over the in-flight limit, javascript
+   * then stops sending it.
+   */
+  boolean receiveChunk(int id, String chunk, boolean last) {
+    String message = null;
+    synchronized (this) {
+      StringBuilder buffer = incoming.get(id);
+      if (outgoingChars + incomingChars + chunk.length() > maxInFlightChars) {
+        if (buffer != null) {
+          incoming.remove(id);
+          incomingChars -= buffer.length();
+        }
+        rejectedIncomingCount++;
+        return false;
+      }
+      receivedChunkCount++;
+      if (buffer == null) {
+        buffer = new StringBuilder(chunk.length() * 2);
+        incoming.put(id, buffer);
+      }
+      buffer.append(chunk);
+      incomingChars += chunk.length();
+      if (last) {
+        incoming.remove(id);
+        incomingChars -= buffer.length();
+        receivedChunkedMessageCount++;
+        message = buffer.toString();
+      }
+    }
+    if (message != null) {
+      webView.receiveMessage(message);
+    }
+    return true;
+  }
+
+  /**
+   * Drops everything in flight, called when a new document replaces the one the chunks belong to.
+   *
+   * @return the callback ids of the dropped messages that carry a call, their callbacks will not be
+   * answered.
+   */
+  synchronized List<String> reset() {
+    ArrayList<String> droppedCallbackIds = new ArrayList<>();
+    for (Outgoing message : outgoing) {
+      if (message.callbackId != null) {
+        droppedCallbackIds.add(message.callbackId);
+      }
+    }
+    outgoing.clear();
+    incoming.clear();
+    outgoingChars = 0;
+    incomingChars = 0;
+    return droppedCallbackIds;
+  }
+
+  synchronized Map<String, Object> toMap() {
+    Map<String, Object> map = new HashMap<>();
+    map.put("threshold", chunkThreshold);
+    map.put("maxInFlightChars", maxInFlightChars);
+    map.put("inFlightChars", outgoingChars + incomingChars);
+    map.put("sentChunks", sentChunkCount);
+    map.put("sentMessages", sentChunkedMessageCount);
+    map.put("receivedChunks", receivedChunkCount);
+    map.put("receivedMessages", receivedChunkedMessageCount);
+    map.put("rejectedOutgoing", rejectedOutgoingCount);
+    map.put("rejectedIncoming", rejectedIncomingCount);
+    return map;
+  }
+}
@@ -0,0 +1,590 @@
+package io.flutter.plugins.webviewflutter.view;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes bridge message envelopes without building an org.json tree.
+ *
+ * <p>The five envelope fields are written straight into a reused buffer, and read with a single
+ * forward pass over the message text. Object and array payloads in {@code data} and
+ * {@code responseData} are not decoded while reading, they are kept as {@link WVJBRawData} and only
+ * turned into org.json values by {@link #materialize} when a handler needs them.
+ */
+final class WVJBMessageCodec {
+  // Buffers that grew past this size for a large payload are shrunk again after use.
+  private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+
+  private final StringBuilder writeBuffer = new StringBuilder(256);
+  private final StringBuilder readBuffer = new StringBuilder(64);
+
+  String encode(WVJBWebView.WVJBMessage message) {
+    synchronized (writeBuffer) {
+      StringBuilder out = writeBuffer;
+      out.setLength(0);
+      out.append('{');
+      boolean empty = true;
+      empty = writeField(out, "callbackId", message.callbackId, empty);
+      empty = writeField(out, "data", message.data, empty);
+      empty = writeField(out, "handlerName", message.handlerName, empty);
+      empty = writeField(out, "responseId", message.responseId, empty);
+      empty = writeField(out, "responseData", message.responseData, empty);
+      writeField(out, "responseError", message.responseError, empty);
+      out.append('}');
+      String json = out.toString();
+      release(out);
+      return json;
+    }
+  }
+
+  WVJBWebView.WVJBMessage decode(String json) throws JSONException {
+    synchronized (readBuffer) {
+      try {
+        return new Reader(json, readBuffer).readMessage();
+      } finally {
+        release(readBuffer);
+      }
+    }
+  }
+
+  /**
+   * Writes a value the way {@link #encode} writes message data.
+   *
+   * @throws IllegalArgumentException if the value, or a value it contains, is not null, a string,
+   * number, boolean, map, collection, array of objects or of a primitive type, org.json value or
+   * {@link WVJBRawData}.
+   */
+  static String toJson(Object value) {
+    StringBuilder out = new StringBuilder(64);
+    writeValue(out, value);
+    return out.toString();
+  }
+
+  /**
+   * Reads a JSON value into maps, lists, strings, numbers, booleans and nulls.
+   */
+  static Object decodeAsCollections(String json) throws JSONException {
+    return new Reader(json, new StringBuilder()).readTree();
+  }
+
+  /**
+   * Converts a value read by {@link #decode} into the org.json types handlers used to receive.
+   */
+  static Object materialize(Object value) throws JSONException {
+    if (value instanceof WVJBRawData) {
+      return ((WVJBRawData) value).decode();
+    }
+    return value;
+  }
+
+  private static void release(StringBuilder buffer) {
+    buffer.setLength(0);
+    if (buffer.capacity() > MAX_RETAINED_BUFFER_SIZE) {
+      buffer.trimToSize();
+    }
+  }
+
+  private static boolean writeField(StringBuilder out, String name, Object value, boolean empty) {
+    if (value == null) {
+      return empty;
+    }
+    if (!empty) {
+      out.append(',');
+    }
+    out.append('"').append(name).append("\":");
+    writeValue(out, value);
+    return false;
+  }
+
+  private static void writeValue(StringBuilder out, Object value) {
+    if (value == null || value == JSONObject.NULL) {
+      out.append("null");
+    } else if (value instanceof String) {
+      writeString(out, (String) value);
+    } else if (value instanceof WVJBRawData) {
+      out.append(((WVJBRawData) value).toJson());
+    } else if (value instanceof Boolean) {
+      out.append(((Boolean) value).booleanValue());
+    } else if (value instanceof Number) {
+      writeNumber(out, (Number) value);
+    } else if (value instanceof Map) {
+      out.append('{');
+      boolean first = true;
+      for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+        if (!first) {
+          out.append(',');
+        }
+        first = false;
+        writeString(out, String.valueOf(entry.getKey()));
+        out.append(':');
+        writeValue(out, entry.getValue());
+      }
+      out.append('}');
+    } else if (value instanceof Collection) {
+      out.append('[');
+      boolean first = true;
+      for (Object element : (Collection<?>) value) {
+        if (!first) {
+          out.append(',');
+        }
+        first = false;
+        writeValue(out, element);
+      }
+      out.append(']');
+    } else if (value instanceof Object[]) {
+      Object[] array = (Object[]) value;
+      out.append('[');
+      for (int i = 0; i < array.length; i++) {
+        if (i > 0) {
+          out.append(',');
+        }
+        writeValue(out, array[i]);
+      }
+      out.append(']');
+    } else if (value instanceof byte[]) {
+      byte[] array = (byte[]) value;
+      out.append('[');
+      for (int i = 0; i < array.length; i++) {
+        if (i > 0) {
+          out.append(',');
+        }
+        out.append(array[i]);
+      }
+      out.append(']');
+    } else if (value instanceof int[]) {
+      int[] array = (int[]) value;
+      out.append('[');
+      for (int i = 0; i < array.length; i++) {
+        if (i > 0) {
+          out.append(',');
+        }
+        out.append(array[i]);
+      }
+      out.append(']');
+    } else if (value instanceof long[]) {
+      long[] array = (long[]) value;
+      out.append('[');
+      for (int i = 0; i < array.length; i++) {
+        if (i > 0) {
+          out.append(',');
+        }
+        out.append(array[i]);
+      }
+      out.append(']');
+    } else if (value instanceof double[]) {
+      double[] array = (double[]) value;
+      out.append('[');
+      for (int i = 0; i < array.length; i++) {
+        if (i > 0) {
+          out.append(',');
+        }
+        writeNumber(out, array[i]);
+      }
+      out.append(']');
+    } else if (value instanceof float[]) {
+      float[] array = (float[]) value;
+      out.append('[');
+      for (int i = 0; i < array.length; i++) {
+        if (i > 0) {
+          out.append(',');
+        }
+        writeNumber(out, array[i]);
+      }
+      out.append(']');
+    } else if (value instanceof JSONObject || value instanceof JSONArray) {
+      out.append(value.toString());
+    } else {
+      throw new IllegalArgumentException(
+          "Unsupported value type for the bridge: " + value.getClass().getName());
+    }
+  }
+
+  private static void writeNumber(StringBuilder out, Number number) {
+    if (number instanceof Float) {
+      // written with the float's own shortest form, not the digits of its double widening
+      float f = number.floatValue();
+      if (Float.isNaN(f) || Float.isInfinite(f)) {
+        out.append("null");
+      } else if (f == (long) f) {
+        out.append((long) f);
+      } else {
+        out.append(f);
+      }
+    } else if (number instanceof Double) {
+      double d = number.doubleValue();
+      if (Double.isNaN(d) || Double.isInfinite(d)) {
+        out.append("null");
+      } else if (d == (long) d) {
+        out.append((long) d);
+      } else {
+        out.append(d);
+      }
+    } else {
+      out.append(number.toString());
+    }
+  }
+
+  private static void writeString(StringBuilder out, String value) {
+    writeString(out, value, 0, value.length());
+  }
+
+  // The output is evaluated as script source, so the line terminators JSON allows inside strings
+  // but older javascript engines do not are escaped as well.
+  static void writeString(StringBuilder out, String value, int from, int to) {
+    out.append('"');
+    int length = to;
+    int start = from;
+    for (int i = from; i < length; i++) {
+      char c = value.charAt(i);
+      String escape;
+      switch (c) {
+        case '"':
+          escape = "\\\"";
+          break;
+        case '\\':
+          escape = "\\\\";
+          break;
+        case '\n':
+          escape = "\\n";
+          break;
+        case '\r':
+          escape = "\\r";
+          break;
+        case '\t':
+          escape = "\\t";
+          break;
+        case '\b':
+          escape = "\\b";
+          break;
+        case '\f':
+          escape = "\\f";
+          break;
+        case '\u2028':
+          escape = "\\u2028";
+          break;
+        case '\u2029':
+          escape = "\\u2029";
+          break;
+        default:
+          if (c >= 0x20) {
+            continue;
+          }
+          escape = String.format("\\u%04x", (int) c);
+      }
+      out.append(value, start, i).append(escape);
+      start = i + 1;
+    }
+    out.append(value, start, length).append('"');
+  }
+
+  private static final class Reader {
+    private final String in;
+    private final StringBuilder buffer;
+    private int pos = 0;
+
+    Reader(String in, StringBuilder buffer) {
+      this.in = in;
+      this.buffer = buffer;
+    }
+
+    WVJBWebView.WVJBMessage readMessage() throws JSONException {
+      WVJBWebView.WVJBMessage message = new WVJBWebView.WVJBMessage();
+      expect('{');
+      if (peek() == '}') {
+        pos++;
+        return message;
+      }
+      while (true) {
+        expect('"');
+        String name = readString();
+        expect(':');
+        switch (name) {
+          case "callbackId":
+            message.callbackId = readStringValue();
+            break;
+          case "data":
+            message.data = readValue();
+            break;
+          case "handlerName":
+            message.handlerName = readStringValue();
+            break;
+          case "responseId":
+            message.responseId = readStringValue();
+            break;
+          case "responseData":
+            message.responseData = readValue();
+            break;
+          default:
+            skipValue();
+        }
+        char c = next();
+        if (c == '}') {
+          return message;
+        }
+        if (c != ',') {
+          throw syntaxError("Expected ',' or '}'");
+        }
+      }
+    }
+
+    // Unlike readValue, objects and arrays are decoded into maps and lists.
+    Object readTree() throws JSONException {
+      char c = peek();
+      if (c == '{') {
+        pos++;
+        Map<String, Object> map = new HashMap<>();
+        if (peek() == '}') {
+          pos++;
+          return map;
+        }
+        while (true) {
+          expect('"');
+          String name = readString();
+          expect(':');
+          map.put(name, readTree());
+          c = next();
+          if (c == '}') {
+            return map;
+          }
+          if (c != ',') {
+            throw syntaxError("Expected ',' or '}'");
+          }
+        }
+      }
+      if (c == '[') {
+        pos++;
+        List<Object> list = new ArrayList<>();
+        if (peek() == ']') {
+          pos++;
+          return list;
+        }
+        while (true) {
+          list.add(readTree());
+          c = next();
+          if (c == ']') {
+            return list;
+          }
+          if (c != ',') {
+            throw syntaxError("Expected ',' or ']'");
+          }
+        }
+      }
+      return readValue();
+    }
+
+    private String readStringValue() throws JSONException {
+      Object value = readValue();
+      return value == null ? null : value.toString();
+    }
+
+    // Scalars are decoded, objects and arrays are returned as raw text.
+    private Object readValue() throws JSONException {
+      char c = peek();
+      switch (c) {
+        case '"':
+          pos++;
+          return readString();
+        case '{':
+        case '[':
+          int start = pos;
+          skipValue();
+          return new WVJBRawData(in.substring(start, pos));
+        case 't':
+          readKeyword("true");
+          return Boolean.TRUE;
+        case 'f':
+          readKeyword("false");
+          return Boolean.FALSE;
+        case 'n':
+          readKeyword("null");
+          return null;
+        default:
+          return readNumber();
+      }
+    }
+
+    private void skipValue() throws JSONException {
+      char c = peek();
+      if (c == '"') {
+        pos++;
+        skipString();
+      } else if (c == '{' || c == '[') {
+        int depth = 0;
+        do {
+          if (pos >= in.length()) {
+            throw syntaxError("Unterminated value");
+          }
+          c = in.charAt(pos++);
+          if (c == '"') {
+            skipString();
+          } else if (c == '{' || c == '[') {
+            depth++;
+          } else if (c == '}' || c == ']') {
+            depth--;
+          }
+        } while (depth > 0);
+      } else {
+        readValue();
+      }
+    }
+
+    private void skipString() throws JSONException {
+      int length = in.length();
+      while (pos < length) {
+        char c = in.charAt(pos++);
+        if (c == '"') {
+          return;
+        }
+        if (c == '\\') {
+          pos++;
+        }
+      }
+      throw syntaxError("Unterminated string");
+    }
+
+    // Called after the opening quote.
+    private String readString() throws JSONException {
+      int start = pos;
+      int length = in.length();
+      // Fast path, strings without escapes are cut straight out of the input.
+      while (pos < length) {
+        char c = in.charAt(pos);
+        if (c == '"') {
+          return in.substring(start, pos++);
+        }
+        if (c == '\\') {
+          break;
+        }
+        pos++;
+      }
+      buffer.setLength(0);
+      buffer.append(in, start, pos);
+      while (pos < length) {
+        char c = in.charAt(pos++);
+        if (c == '"') {
+          return buffer.toString();
+        }
+        if (c != '\\') {
+          buffer.append(c);
+          continue;
+        }
+        if (pos >= length) {
+          break;
+        }
+        c = in.charAt(pos++);
+        switch (c) {
+          case 'u':
+            if (pos + 4 > length) {
+              throw syntaxError("Unterminated escape sequence");
+            }
+            try {
+              buffer.append((char) Integer.parseInt(in.substring(pos, pos + 4), 16));
+            } catch (NumberFormatException e) {
+              throw syntaxError("Invalid escape sequence");
+            }
+            pos += 4;
+            break;
+          case 'n':
+            buffer.append('\n');
+            break;
+          case 'r':
+            buffer.append('\r');
+            break;
+          case 't':
+            buffer.append('\t');
+            break;
+          case 'b':
+            buffer.append('\b');
+            break;
+          case 'f':
+            buffer.append('\f');
+            break;
+          default:
+            buffer.append(c);
+        }
+      }
+      throw syntaxError("Unterminated string");
+    }
+
+    // Mirrors org.json, integers become Integer or Long and everything else Double.
+    private Number readNumber() throws JSONException {
+      int start = pos;
+      int length = in.length();
+      boolean integral = true;
+      while (pos < length) {
+        char c = in.charAt(pos);
+        if (c == '.' || c == 'e' || c == 'E') {
+          integral = false;
+        } else if (!(c == '-' || c == '+' || (c >= '0' && c <= '9'))) {
+          break;
+        }
+        pos++;
+      }
+      if (start == pos) {
+        throw syntaxError("Unexpected character");
+      }
+      String literal = in.substring(start, pos);
+      try {
+        if (integral) {
+          try {
+            long value = Long.parseLong(literal);
+            if (value <= Integer.MAX_VALUE && value >= Integer.MIN_VALUE) {
+              return (int) value;
+            }
+            return value;
+          } catch (NumberFormatException e) {
+            // integers outside the long range, JSON.stringify writes 1e19 without an exponent,
+            // are read as doubles like org.json does
+          }
+        }
+        return Double.valueOf(literal);
+      } catch (NumberFormatException e) {
+        throw syntaxError("Invalid number " + literal);
+      }
+    }
+
+    private void readKeyword(String keyword) throws JSONException {
+      if (!in.startsWith(keyword, pos)) {
+        throw syntaxError("Unexpected literal");
+      }
+      pos += keyword.length();
+    }
+
+    private void expect(char expected) throws JSONException {
+      if (next() != expected) {
+        throw syntaxError("Expected '" + expected + "'");
+      }
+    }
+
+    // Returns the next non whitespace character and consumes it.
+    private char next() throws JSONException {
+      char c = peek();
+      pos++;
+      return c;
+    }
+
+    // Returns the next non whitespace character without consuming it.
+    private char peek() throws JSONException {
+      int length = in.length();
+      while (pos < length) {
+        char c = in.charAt(pos);
+        if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+          return c;
+        }
+        pos++;
+      }
+      throw syntaxError("End of input");
+    }
+
+    private JSONException syntaxError(String message) {
+      return new JSONException(message + " at character " + pos);
+    }
+  }
+}
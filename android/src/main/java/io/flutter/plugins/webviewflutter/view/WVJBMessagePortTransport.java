@@ -0,0 +1,67 @@
+package io.flutter.plugins.webviewflutter.view;
+
+import android.annotation.SuppressLint;
+import android.net.Uri;
+
+import androidx.webkit.WebMessageCompat;
+import androidx.webkit.WebMessagePortCompat;
+import androidx.webkit.WebViewCompat;
+import androidx.webkit.WebViewFeature;
+
+/**
+ * Delivers messages from java to javascript over a web message channel instead of evaluating a
+ * script for every message.
+ *
+ * <p>Once the javascript side of the bridge reports ready, one end of a new channel is posted to
+ * the page, where the bridge picks it up. Messages are then posted as plain strings that the page
+ * parses as JSON. The channel belongs to a single document and is dropped when a new one begins,
+ * until that document's bridge reports ready messages go through scripts. The web view connects
+ * at most once per document. All methods must be called on the main thread.
+ */
+final class WVJBMessagePortTransport {
+  // the message that carries the javascript end of the channel, matched by the bridge script
+  private static final String PORT_MESSAGE = "WVJBPort";
+
+  private final WVJBWebView webView;
+  private WebMessagePortCompat port = null;
+
+  WVJBMessagePortTransport(WVJBWebView webView) {
+    this.webView = webView;
+  }
+
+  static boolean isSupported() {
+    return WebViewFeature.isFeatureSupported(WebViewFeature.CREATE_WEB_MESSAGE_CHANNEL)
+        && WebViewFeature.isFeatureSupported(WebViewFeature.POST_WEB_MESSAGE)
+        && WebViewFeature.isFeatureSupported(WebViewFeature.WEB_MESSAGE_PORT_POST_MESSAGE)
+        && WebViewFeature.isFeatureSupported(WebViewFeature.WEB_MESSAGE_PORT_CLOSE);
+  }
+
+  /**
+   * Creates a channel for the current document and hands its javascript end to the page, which
+   * replaces a port it got before with it. Must only be called while disconnected.
+   */
+  @SuppressLint("RequiresFeature")
+  void connect() {
+    WebMessagePortCompat[] ports = WebViewCompat.createWebMessageChannel(webView);
+    WebViewCompat.postWebMessage(webView,
+        new WebMessageCompat(PORT_MESSAGE, new WebMessagePortCompat[]{ports[1]}), Uri.parse("*"));
+    port = ports[0];
+  }
+
+  @SuppressLint("RequiresFeature")
+  void disconnect() {
+    if (port != null) {
+      port.close();
+      port = null;
+    }
+  }
+
+  boolean isConnected() {
+    return port != null;
+  }
+
+  @SuppressLint("RequiresFeature")
+  void post(String data) {
+    port.postMessage(new WebMessageCompat(data));
+  }
+}
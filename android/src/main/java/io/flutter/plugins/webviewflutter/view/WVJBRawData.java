@@ -0,0 +1,60 @@
+package io.flutter.plugins.webviewflutter.view;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * A JSON object or array received over the bridge that has not been decoded.
+ *
+ * <p>Handlers and callbacks that only forward a payload can receive it in this form by implementing
+ * {@link WVJBWebView.WVJBRawHandler} or {@link WVJBWebView.WVJBRawResponseCallback}, which avoids
+ * building an org.json tree for it. Passing it back into the bridge writes the text as is.
+ */
+public final class WVJBRawData {
+  private final String json;
+
+  WVJBRawData(String json) {
+    this.json = json;
+  }
+
+  /**
+   * Encodes a map, list or array once, with the same rules the bridge uses for message data.
+   * Values from a platform channel's {@code StandardMessageCodec} are all supported.
+   *
+   * @throws IllegalArgumentException if the value contains a type the bridge cannot encode.
+   */
+  public static WVJBRawData encode(Object value) {
+    return new WVJBRawData(WVJBMessageCodec.toJson(value));
+  }
+
+  /**
+   * @return the JSON text of this value, exactly as it was received.
+   */
+  public String toJson() {
+    return json;
+  }
+
+  /**
+   * @return this value as a {@link JSONObject} or {@link JSONArray}.
+   */
+  public Object decode() throws JSONException {
+    if (json.charAt(0) == '[') {
+      return new JSONArray(json);
+    }
+    return new JSONObject(json);
+  }
+
+  /**
+   * @return this value as {@link java.util.Map} and {@link java.util.List} instances holding
+   * strings, numbers, booleans and nulls, the types a platform channel can carry.
+   */
+  public Object decodeAsCollections() throws JSONException {
+    return WVJBMessageCodec.decodeAsCollections(json);
+  }
+
+  @Override
+  public String toString() {
+    return json;
+  }
+}
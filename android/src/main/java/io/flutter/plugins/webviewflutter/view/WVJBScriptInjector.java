@@ -0,0 +1,211 @@
+package io.flutter.plugins.webviewflutter.view;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.os.SystemClock;
+import android.webkit.ValueCallback;
+
+import androidx.webkit.ScriptHandler;
+import androidx.webkit.WebViewCompat;
+import androidx.webkit.WebViewFeature;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+
+/**
+ * Injects WebViewJavascriptBridge.js into the documents loaded by a {@link WVJBWebView}.
+ *
+ * <p>The script asset is decoded once per process and kept in memory. Each web view owns an
+ * injector that remembers whether the current document already has the bridge, so the script is
+ * evaluated at most once per navigation no matter how many progress updates arrive.
+ *
+ * <p>Where the WebView supports it the script can instead be installed once as a document start
+ * script, the bridge then exists before any page script runs and reports itself ready over the
+ * bridge as soon as it is installed.
+ */
+public class WVJBScriptInjector {
+  private static final String SCRIPT_ASSET = "WebViewJavascriptBridge.js";
+  private static volatile String cachedScript = null;
+  private static long scriptLoadMillis = 0;
+
+  private final WVJBWebView webView;
+  private ScriptHandler documentStartScript = null;
+  private boolean injected = false;
+  private long loadStartMillis = 0;
+  private long lastLoadToReadyMillis = -1;
+  private long injectionCount = 0;
+  private long lastInjectionMillis = 0;
+  private long totalInjectionMillis = 0;
+
+  WVJBScriptInjector(WVJBWebView webView) {
+    this.webView = webView;
+  }
+
+  /**
+   * Returns the bridge script, reading it from the assets the first time it is needed.
+   */
+  static String getScript(Context context) throws IOException {
+    String script = cachedScript;
+    if (script != null) {
+      return script;
+    }
+    synchronized (WVJBScriptInjector.class) {
+      if (cachedScript == null) {
+        long start = SystemClock.elapsedRealtime();
+        cachedScript = readAsset(context, SCRIPT_ASSET);
+        scriptLoadMillis = SystemClock.elapsedRealtime() - start;
+      }
+      return cachedScript;
+    }
+  }
+
+  private static String readAsset(Context context, String name) throws IOException {
+    InputStream is = context.getAssets().open(name);
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[4096];
+      int read;
+      while ((read = is.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+      }
+      return out.toString("UTF-8");
+    } finally {
+      is.close();
+    }
+  }
+
+  /**
+   * Called when the web view starts loading a new document, which does not have the bridge yet.
+   */
+  void onPageStarted() {
+    injected = false;
+  }
+
+  boolean isInjected() {
+    return injected;
+  }
+
+  /**
+   * Installs the bridge script so it runs at the start of every document, before page scripts.
+   * The script runs in every frame, as the API has no main frame only option, and returns right
+   * away in sub frames. Must be called on the main thread.
+   *
+   * @return false if the WebView does not support document start scripts, the caller should keep
+   * injecting the script as the page loads.
+   */
+  @SuppressLint("RequiresFeature")
+  boolean installAtDocumentStart() {
+    if (documentStartScript != null) {
+      return true;
+    }
+    if (!WebViewFeature.isFeatureSupported(WebViewFeature.DOCUMENT_START_SCRIPT)) {
+      return false;
+    }
+    try {
+      documentStartScript = WebViewCompat.addDocumentStartJavaScript(
+          webView, getScript(webView.getContext()), Collections.singleton("*"));
+    } catch (IOException e) {
+      e.printStackTrace();
+      return false;
+    }
+    return true;
+  }
+
+  void removeFromDocumentStart() {
+    if (documentStartScript != null) {
+      documentStartScript.remove();
+      documentStartScript = null;
+    }
+  }
+
+  boolean isInstalledAtDocumentStart() {
+    return documentStartScript != null;
+  }
+
+  /**
+   * Called whenever a url is loaded, the time until the bridge reports ready is measured from here.
+   */
+  synchronized void onLoadUrl() {
+    loadStartMillis = SystemClock.elapsedRealtime();
+  }
+
+  /**
+   * Called when the javascript side of the bridge sends its ready handshake.
+   */
+  synchronized void onBridgeReady() {
+    if (loadStartMillis != 0) {
+      lastLoadToReadyMillis = SystemClock.elapsedRealtime() - loadStartMillis;
+      loadStartMillis = 0;
+    }
+  }
+
+  /**
+   * Evaluates the bridge script unless the current document already has it. Must be called on the
+   * main thread.
+   */
+  void injectIfNeeded() {
+    if (injected || documentStartScript != null) {
+      return;
+    }
+    final String script;
+    try {
+      script = getScript(webView.getContext());
+    } catch (IOException e) {
+      e.printStackTrace();
+      return;
+    }
+    injected = true;
+    final long start = SystemClock.elapsedRealtime();
+    webView.evaluateJavascript(script, new ValueCallback<String>() {
+      @Override
+      public void onReceiveValue(String value) {
+        long elapsed = SystemClock.elapsedRealtime() - start;
+        synchronized (WVJBScriptInjector.this) {
+          injectionCount++;
+          lastInjectionMillis = elapsed;
+          totalInjectionMillis += elapsed;
+        }
+      }
+    });
+  }
+
+  /**
+   * @return how long it took to read and decode the script asset, this happens once per process.
+   */
+  public static long getScriptLoadMillis() {
+    synchronized (WVJBScriptInjector.class) {
+      return scriptLoadMillis;
+    }
+  }
+
+  /**
+   * @return the number of documents the bridge was injected into.
+   */
+  public synchronized long getInjectionCount() {
+    return injectionCount;
+  }
+
+  /**
+   * @return how long the most recent injection took to evaluate, in milliseconds.
+   */
+  public synchronized long getLastInjectionMillis() {
+    return lastInjectionMillis;
+  }
+
+  /**
+   * @return the time spent evaluating the bridge script across all injections, in milliseconds.
+   */
+  public synchronized long getTotalInjectionMillis() {
+    return totalInjectionMillis;
+  }
+
+  /**
+   * @return the time from the most recent loadUrl call to the bridge reporting ready, in
+   * milliseconds, or -1 if the bridge has not reported ready yet.
+   */
+  public synchronized long getLastLoadToReadyMillis() {
+    return lastLoadToReadyMillis;
+  }
+}
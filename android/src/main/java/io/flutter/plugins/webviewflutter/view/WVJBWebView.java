@@ -6,14 +6,18 @@ import android.app.AlertDialog;
 import android.app.Dialog;
 import android.content.Context;
 import android.content.DialogInterface;
+import android.content.MutableContextWrapper;
 import android.graphics.Bitmap;
 import android.net.Uri;
 import android.net.http.SslError;
 import android.os.Build;
 import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.Looper;
 import android.os.Message;
+import android.os.SystemClock;
 import android.util.AttributeSet;
+import android.view.Choreographer;
 import android.view.Gravity;
 import android.view.KeyEvent;
 import android.view.View;
@@ -41,14 +45,14 @@ import android.widget.EditText;
 import android.widget.FrameLayout;
 
 import org.json.JSONException;
-import org.json.JSONObject;
 
-import java.io.IOException;
-import java.io.InputStream;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Created by du on 16/12/29.
@@ -60,7 +64,11 @@ public class WVJBWebView extends WebView {
   private static final int EXEC_SCRIPT = 1;
   private static final int LOAD_URL = 2;
   private static final int LOAD_URL_WITH_HEADERS = 3;
-  private static final int HANDLE_MESSAGE = 4;
+  private static final int SCHEDULE_BATCH = 4;
+  private static final int DELIVER_MESSAGE = 5;
+  private static final String PARSER_THREAD_NAME = "WVJBMessageParser";
+  // Shared by all web views so messages are parsed in the order javascript sent them.
+  private static Handler parserHandler = null;
   MyHandler mainThreadHandler = null;
   private JavascriptCloseWindowListener javascriptCloseWindowListener = null;
 
@@ -89,9 +97,14 @@ public class WVJBWebView extends WebView {
             WVJBWebView.super.loadUrl(info.url, info.headers);
           }
           break;
-          case HANDLE_MESSAGE:
-            WVJBWebView.this.handleMessage((String) msg.obj);
+          case SCHEDULE_BATCH:
+            Choreographer.getInstance().postFrameCallback(batchFrameCallback);
             break;
+          case DELIVER_MESSAGE: {
+            Delivery delivery = (Delivery) msg.obj;
+            deliverToJavascript(delivery.json, delivery.callbackIds);
+          }
+          break;
         }
       }
     }
@@ -107,12 +120,37 @@ public class WVJBWebView extends WebView {
     }
   }
 
-  private class WVJBMessage {
+  // a message, or batch of messages, on its way to the main thread with the calls it carries
+  private static class Delivery {
+    final String json;
+    final ArrayList<String> callbackIds;
+
+    Delivery(String json, ArrayList<String> callbackIds) {
+      this.json = json;
+      this.callbackIds = callbackIds;
+    }
+  }
+
+  private static class HandlerRegistration {
+    final WVJBHandler handler;
+    final Executor executor;
+
+    HandlerRegistration(WVJBHandler handler, Executor executor) {
+      this.handler = handler;
+      this.executor = executor;
+    }
+  }
+
+  static class WVJBMessage {
     Object data = null;
     String callbackId = null;
     String handlerName = null;
     String responseId = null;
     Object responseData = null;
+    // a map with the code and message of a failed call, sent instead of responseData
+    Object responseError = null;
+    // not part of the envelope, when the message entered the startup queue
+    long queuedMillis = 0;
   }
 
   public WVJBWebView(Context context, AttributeSet attrs) {
@@ -125,16 +163,85 @@ public class WVJBWebView extends WebView {
     init();
   }
 
+  // replaced by initBridgeState on the main thread and read by the JavaBridge and parser threads,
+  // volatile so those threads see the objects of the current use
+  private volatile WVJBScriptInjector scriptInjector = null;
+  private final WVJBMessageCodec codec = new WVJBMessageCodec();
+  private volatile WVJBBridgeStats stats = null;
+  // guarded by this
   private ArrayList<WVJBMessage> startupMessageQueue = null;
-  private Map<String, WVJBResponseCallback> responseCallbacks = null;
-  private Map<String, WVJBHandler> messageHandlers = null;
-  private long uniqueId = 0;
+  private volatile WVJBCallbackRegistry responseCallbacks = null;
+  private volatile WVJBChunkTransfer chunkTransfer = null;
+  private volatile WVJBMessagePortTransport portTransport = null;
+  private boolean messagePortTransportEnabled = false;
+  private volatile Map<String, HandlerRegistration> messageHandlers = null;
+  private long defaultCallbackTimeoutMillis = 0;
   private boolean alertboxBlock = true;
+  private volatile boolean messageBatchingEnabled = false;
+  private final ArrayList<String> pendingBatch = new ArrayList<>();
+  // callback ids of the calls in pendingBatch, guarded by pendingBatch
+  private ArrayList<String> pendingBatchCallbackIds = new ArrayList<>();
+  // Main thread only. A new document shows up twice, as onPageStarted and as the ready handshake
+  // of its bridge, and with document start injection the handshake can come first. Whichever
+  // comes first begins the document, the other one is matched to it.
+  private int documentGeneration = 0;
+  private boolean readyAwaitingPageStart = false;
+  private boolean pageStartAwaitingReady = false;
+  private boolean batchScheduled = false;
+  private long dispatchedBatchCount = 0;
+  private long dispatchedBatchMessageCount = 0;
+  private int lastDispatchedBatchSize = 0;
+  private int largestDispatchedBatchSize = 0;
+
+  private final Choreographer.FrameCallback batchFrameCallback = new Choreographer.FrameCallback() {
+    @Override
+    public void doFrame(long frameTimeNanos) {
+      flushBatch();
+    }
+  };
 
   public interface WVJBResponseCallback<T> {
     void onResult(T data);
   }
 
+  /**
+   * Passed to {@link WVJBExpiringResponseCallback#onExpired} when javascript did not respond within
+   * the timeout of the call.
+   */
+  public static final int CALLBACK_TIMED_OUT = 1;
+  /**
+   * Passed to {@link WVJBExpiringResponseCallback#onExpired} when too many calls were waiting for a
+   * response and this was the oldest one.
+   */
+  public static final int CALLBACK_EVICTED = 2;
+  /**
+   * Passed to {@link WVJBExpiringResponseCallback#onExpired} when the page the call was sent to was
+   * replaced by a new document before it responded.
+   */
+  public static final int CALLBACK_PAGE_CHANGED = 3;
+  /**
+   * Passed to {@link WVJBExpiringResponseCallback#onExpired} when the call was not sent because it
+   * did not fit within the in-flight limit set by {@link #setMaxInFlightChars}.
+   */
+  public static final int CALLBACK_REJECTED = 4;
+  /**
+   * Passed to {@link WVJBExpiringResponseCallback#onExpired} when the web view was destroyed before
+   * javascript responded.
+   */
+  public static final int CALLBACK_CANCELLED = 5;
+
+  /**
+   * A response callback that is also told when no response will arrive.
+   */
+  public interface WVJBExpiringResponseCallback<T> extends WVJBResponseCallback<T> {
+    /**
+     * @param reason one of {@link #CALLBACK_TIMED_OUT}, {@link #CALLBACK_EVICTED},
+     *               {@link #CALLBACK_PAGE_CHANGED}, {@link #CALLBACK_REJECTED} or
+     *               {@link #CALLBACK_CANCELLED}.
+     */
+    void onExpired(int reason);
+  }
+
   public interface WVJBMethodExistCallback {
     void onResult(boolean exist);
   }
@@ -150,10 +257,83 @@ public class WVJBWebView extends WebView {
     void handler(T data, WVJBResponseCallback<R> callback);
   }
 
+  /**
+   * A handler that receives object and array payloads as {@link WVJBRawData} instead of org.json
+   * values, for handlers that forward the payload without looking into it.
+   */
+  public interface WVJBRawHandler<R> extends WVJBHandler<Object, R> {
+  }
+
+  /**
+   * A response callback that can also fail the call. The javascript response callback then
+   * receives null data and an {@code {code, message}} object as its second argument.
+   */
+  public interface WVJBErrorResponseCallback<T> extends WVJBResponseCallback<T> {
+    void onError(String code, String message);
+  }
+
+  /**
+   * A response callback that receives object and array results as {@link WVJBRawData} instead of
+   * org.json values.
+   */
+  public interface WVJBRawResponseCallback extends WVJBResponseCallback<Object> {
+  }
+
   public void disableJavascriptAlertBoxSafetyTimeout(boolean disable) {
     alertboxBlock = !disable;
   }
 
+  /**
+   * When enabled, messages sent to javascript during one main-thread frame are delivered together
+   * in a single {@code _handleMessageFromJava([...])} call instead of one script per message.
+   */
+  public void setMessageBatchingEnabled(boolean enabled) {
+    if (!enabled) {
+      flushBatch();
+    }
+    messageBatchingEnabled = enabled;
+  }
+
+  public boolean isMessageBatchingEnabled() {
+    return messageBatchingEnabled;
+  }
+
+  /**
+   * @return the number of batches delivered to javascript since this web view was created.
+   */
+  public long getDispatchedBatchCount() {
+    synchronized (pendingBatch) {
+      return dispatchedBatchCount;
+    }
+  }
+
+  /**
+   * @return the total number of messages carried by all batches delivered to javascript.
+   */
+  public long getDispatchedBatchMessageCount() {
+    synchronized (pendingBatch) {
+      return dispatchedBatchMessageCount;
+    }
+  }
+
+  /**
+   * @return the number of messages carried by the most recent batch.
+   */
+  public int getLastDispatchedBatchSize() {
+    synchronized (pendingBatch) {
+      return lastDispatchedBatchSize;
+    }
+  }
+
+  /**
+   * @return the number of messages carried by the largest batch delivered so far.
+   */
+  public int getLargestDispatchedBatchSize() {
+    synchronized (pendingBatch) {
+      return largestDispatchedBatchSize;
+    }
+  }
+
   public void callHandler(String handlerName) {
     callHandler(handlerName, null, null);
   }
@@ -162,8 +342,60 @@ public class WVJBWebView extends WebView {
     callHandler(handlerName, data, null);
   }
 
+  /**
+   * @throws IllegalArgumentException if {@code data} contains a value the bridge cannot encode, see
+   *                                  {@link WVJBRawData#encode}.
+   */
   public <T> void callHandler(String handlerName, Object data, WVJBResponseCallback<T> responseCallback) {
-    sendData(data, responseCallback, handlerName);
+    sendData(data, responseCallback, handlerName, defaultCallbackTimeoutMillis);
+  }
+
+  /**
+   * @param timeoutMillis how long to wait for javascript to respond, when it passes the callback is
+   *                      dropped, a {@link WVJBExpiringResponseCallback} is told so. 0 waits until
+   *                      the page changes.
+   */
+  public <T> void callHandler(String handlerName, Object data, WVJBResponseCallback<T> responseCallback,
+                              long timeoutMillis) {
+    sendData(data, responseCallback, handlerName, timeoutMillis);
+  }
+
+  /**
+   * Sets the timeout used by calls that do not pass one, 0 (the default) waits until the page changes.
+   */
+  public void setDefaultCallbackTimeout(long timeoutMillis) {
+    defaultCallbackTimeoutMillis = timeoutMillis;
+  }
+
+  /**
+   * Limits how many calls can wait for a response at once, the oldest call is dropped when a new
+   * one goes over the limit.
+   */
+  public void setMaxPendingCallbacks(int maxPendingCallbacks) {
+    responseCallbacks.setMaxPendingCallbacks(maxPendingCallbacks);
+  }
+
+  /**
+   * Messages longer than the threshold, in either direction, are sent in chunks of that many
+   * characters that are delivered over several frames and joined on the receiving side. 0 or less
+   * sends every message whole. Javascript reads the threshold when the bridge is installed, so
+   * changes reach it with the next document.
+   */
+  public void setChunkThreshold(int chars) {
+    chunkTransfer.setChunkThreshold(chars);
+  }
+
+  public int getChunkThreshold() {
+    return chunkTransfer.getChunkThreshold();
+  }
+
+  /**
+   * Limits how many characters of chunked messages can be in flight at once, counting both
+   * directions. Messages that would go over the limit are dropped, a
+   * {@link WVJBExpiringResponseCallback} of a dropped call is told so.
+   */
+  public void setMaxInFlightChars(int chars) {
+    chunkTransfer.setMaxInFlightChars(chars);
   }
 
   /**
@@ -181,6 +413,82 @@ public class WVJBWebView extends WebView {
     });
   }
 
+  /**
+   * Installs the bridge at document start, where the WebView supports it, so messages queued
+   * while a page loads are delivered as soon as the bridge sends its ready handshake instead of
+   * waiting for most of the page to download. Call this before loading a url.
+   *
+   * @return true if document start injection is active, false if this WebView version does not
+   * support it and the bridge is still injected as the page loads.
+   */
+  public boolean setDocumentStartInjectionEnabled(boolean enabled) {
+    if (enabled) {
+      return scriptInjector.installAtDocumentStart();
+    }
+    scriptInjector.removeFromDocumentStart();
+    return false;
+  }
+
+  /**
+   * Delivers messages to javascript over a web message channel, where the WebView supports it,
+   * instead of evaluating a script for every message. The channel is set up each time a document's
+   * bridge reports ready, messages sent before that still go through scripts. Handlers and callbacks
+   * behave the same with either transport. Call this before loading a url.
+   *
+   * @return true if the web message channel will be used, false if this WebView version does not
+   * support it.
+   */
+  public boolean setMessagePortTransportEnabled(boolean enabled) {
+    messagePortTransportEnabled = enabled && WVJBMessagePortTransport.isSupported();
+    if (!messagePortTransportEnabled) {
+      portTransport.disconnect();
+    }
+    return messagePortTransportEnabled;
+  }
+
+  /**
+   * Returns a snapshot of the bridge metrics: per handler call counts and latency histograms,
+   * payload sizes, startup queue depth and wait time, batching, script injection, pending callback
+   * and error counters. The snapshot only contains maps, lists, strings and numbers.
+   */
+  public Map<String, Object> getBridgeStats() {
+    Map<String, Object> snapshot = stats.toMap();
+    Map<String, Object> batches = new HashMap<>();
+    synchronized (pendingBatch) {
+      batches.put("count", dispatchedBatchCount);
+      batches.put("messages", dispatchedBatchMessageCount);
+      batches.put("lastSize", lastDispatchedBatchSize);
+      batches.put("maxSize", largestDispatchedBatchSize);
+    }
+    snapshot.put("batches", batches);
+    Map<String, Object> injection = new HashMap<>();
+    injection.put("scriptLoadMillis", WVJBScriptInjector.getScriptLoadMillis());
+    injection.put("count", scriptInjector.getInjectionCount());
+    injection.put("lastMillis", scriptInjector.getLastInjectionMillis());
+    injection.put("totalMillis", scriptInjector.getTotalInjectionMillis());
+    injection.put("documentStart", scriptInjector.isInstalledAtDocumentStart());
+    injection.put("lastLoadToReadyMillis", scriptInjector.getLastLoadToReadyMillis());
+    snapshot.put("injection", injection);
+    Map<String, Object> callbacks = new HashMap<>();
+    callbacks.put("pending", responseCallbacks.size());
+    callbacks.put("timedOut", responseCallbacks.getTimedOutCount());
+    callbacks.put("evicted", responseCallbacks.getEvictedCount());
+    callbacks.put("pageChanged", responseCallbacks.getPageChangedCount());
+    callbacks.put("rejected", responseCallbacks.getRejectedCount());
+    callbacks.put("cancelled", responseCallbacks.getCancelledCount());
+    snapshot.put("callbacks", callbacks);
+    snapshot.put("chunks", chunkTransfer.toMap());
+    snapshot.put("messagePortTransport", messagePortTransportEnabled);
+    return snapshot;
+  }
+
+  /**
+   * @return the injector that installs WebViewJavascriptBridge.js, it also records injection timings.
+   */
+  public WVJBScriptInjector getScriptInjector() {
+    return scriptInjector;
+  }
+
   /**
    * set a listener for javascript closing the current activity.
    */
@@ -189,28 +497,41 @@ public class WVJBWebView extends WebView {
   }
 
   public <T, R> void registerHandler(String handlerName, WVJBHandler<T, R> handler) {
+    registerHandler(handlerName, handler, null);
+  }
+
+  /**
+   * Registers a handler that is invoked on the given executor instead of the main thread, e.g. a
+   * background pool or a serial queue for handlers that do disk or crypto work.
+   *
+   * <p>The response callback passed to the handler can be completed from any thread.
+   *
+   * @param executor the executor to run the handler on, or null to run it on the main thread.
+   */
+  public <T, R> void registerHandler(String handlerName, WVJBHandler<T, R> handler, Executor executor) {
     if (handlerName == null || handlerName.length() == 0 || handler == null) {
       return;
     }
-    messageHandlers.put(handlerName, handler);
+    messageHandlers.put(handlerName, new HandlerRegistration(handler, executor));
   }
 
   // send the onResult message to javascript
-  private void sendData(Object data, WVJBResponseCallback responseCallback, String handlerName) {
+  private void sendData(Object data, WVJBResponseCallback responseCallback, String handlerName,
+                        long timeoutMillis) {
     if (data == null && (handlerName == null || handlerName.length() == 0)) {
       return;
     }
     WVJBMessage message = new WVJBMessage();
     if (data != null) {
-      message.data = data;
+      // encoded now so unsupported values throw to the caller, not where the message is flushed
+      message.data = data instanceof WVJBRawData ? data : WVJBRawData.encode(data);
     }
     if (responseCallback != null) {
-      String callbackId = "java_cb_" + (++uniqueId);
-      responseCallbacks.put(callbackId, responseCallback);
-      message.callbackId = callbackId;
+      message.callbackId = responseCallbacks.add(responseCallback, timeoutMillis, handlerName);
     }
     if (handlerName != null) {
       message.handlerName = handlerName;
+      stats.recordNativeCall(handlerName);
     }
     queueMessage(message);
   }
@@ -218,107 +539,372 @@ public class WVJBWebView extends WebView {
   private synchronized void queueMessage(WVJBMessage message) {
 
     if (startupMessageQueue != null) {
+      message.queuedMillis = SystemClock.elapsedRealtime();
       startupMessageQueue.add(message);
+      stats.recordQueued();
     } else {
       dispatchMessage(message);
     }
   }
 
-  private void dispatchMessage(WVJBMessage message) {
-    String messageJSON = message2JSONObject(message).toString();
-    evaluateJavascript(String.format("WebViewJavascriptBridge._handleMessageFromJava(%s)", messageJSON));
+  private synchronized void flushStartupMessageQueue() {
+    if (startupMessageQueue != null) {
+      long now = SystemClock.elapsedRealtime();
+      for (int i = 0; i < startupMessageQueue.size(); i++) {
+        WVJBMessage message = startupMessageQueue.get(i);
+        stats.recordDequeued(now - message.queuedMillis);
+        dispatchMessage(message);
+      }
+      startupMessageQueue = null;
+    }
   }
 
-  // handle the onResult message from javascript
-  private void handleMessage(String info) {
-    try {
-      JSONObject jo = new JSONObject(info);
-      WVJBMessage message = JSONObject2WVJBMessage(jo);
-      if (message.responseId != null) {
-        WVJBResponseCallback responseCallback = responseCallbacks.remove(message.responseId);
-        if (responseCallback != null) {
-          responseCallback.onResult(message.responseData);
-        }
-      } else {
-        WVJBResponseCallback responseCallback = null;
+  private void dispatchMessage(WVJBMessage message) {
+    String messageJSON = codec.encode(message);
+    stats.recordOutgoing(messageJSON.length());
+    switch (chunkTransfer.send(messageJSON, message.callbackId)) {
+      case WVJBChunkTransfer.QUEUED:
+        return;
+      case WVJBChunkTransfer.REJECTED:
         if (message.callbackId != null) {
-          final String callbackId = message.callbackId;
-          responseCallback = new WVJBResponseCallback() {
-            @Override
-            public void onResult(Object data) {
-              WVJBMessage msg = new WVJBMessage();
-              msg.responseId = callbackId;
-              msg.responseData = data;
-              dispatchMessage(msg);
-            }
-          };
+          responseCallbacks.reject(message.callbackId);
         }
+        return;
+    }
+    if (messageBatchingEnabled) {
+      enqueueBatch(messageJSON, message.callbackId);
+      return;
+    }
+    deliverToJavascript(messageJSON, message.callbackId);
+  }
 
-        WVJBHandler handler;
-        handler = messageHandlers.get(message.handlerName);
-        if (handler != null) {
-          handler.handler(message.data, responseCallback);
-        }
+  void deliverToJavascript(String json, String callbackId) {
+    ArrayList<String> callbackIds = null;
+    if (callbackId != null) {
+      callbackIds = new ArrayList<>(1);
+      callbackIds.add(callbackId);
+    }
+    deliverToJavascript(json, callbackIds);
+  }
+
+  // hands a message, or an array of messages, to javascript over the current transport
+  private void deliverToJavascript(String json, ArrayList<String> callbackIds) {
+    if (Looper.getMainLooper() != Looper.myLooper()) {
+      mainThreadHandler.sendMessage(
+          mainThreadHandler.obtainMessage(DELIVER_MESSAGE, new Delivery(json, callbackIds)));
+      return;
+    }
+    if (portTransport.isConnected()) {
+      portTransport.post(json);
+    } else {
+      _evaluateJavascript("WebViewJavascriptBridge._handleMessageFromJava(" + json + ")");
+    }
+    if (callbackIds != null) {
+      for (int i = 0; i < callbackIds.size(); i++) {
+        responseCallbacks.markDispatched(callbackIds.get(i), documentGeneration);
       }
-    } catch (Exception e) {
-      e.printStackTrace();
     }
   }
 
-  private JSONObject message2JSONObject(WVJBMessage message) {
-    JSONObject jo = new JSONObject();
-    try {
-      if (message.callbackId != null) {
-        jo.put("callbackId", message.callbackId);
+  // hands json[start, end) of a chunked message to javascript, must be called on the main thread
+  void deliverChunkToJavascript(
+      int id, String json, int start, int end, boolean last, String callbackId) {
+    StringBuilder out = new StringBuilder(end - start + 64);
+    if (portTransport.isConnected()) {
+      // the text is sent as is behind a "~id:last:" header the bridge script splits off
+      out.append('~').append(id).append(':').append(last ? '1' : '0').append(':');
+      out.append(json, start, end);
+      portTransport.post(out.toString());
+    } else {
+      out.append("WebViewJavascriptBridge._handleChunkFromJava(").append(id).append(',');
+      WVJBMessageCodec.writeString(out, json, start, end);
+      out.append(',').append(last).append(')');
+      _evaluateJavascript(out.toString());
+    }
+    if (last && callbackId != null) {
+      responseCallbacks.markDispatched(callbackId, documentGeneration);
+    }
+  }
+
+  // Called on the main thread when a new document replaces the current one. Calls written to the
+  // previous document will not be answered and chunks still on their way belong to it, the calls
+  // those chunks carry expire with them.
+  private void beginDocument() {
+    documentGeneration++;
+    responseCallbacks.expireDispatchedBefore(documentGeneration);
+    responseCallbacks.expireUnsent(chunkTransfer.reset());
+    portTransport.disconnect();
+  }
+
+  private void onDocumentPageStarted() {
+    if (readyAwaitingPageStart) {
+      readyAwaitingPageStart = false;
+      return;
+    }
+    beginDocument();
+    pageStartAwaitingReady = true;
+  }
+
+  private void onDocumentBridgeReady() {
+    if (pageStartAwaitingReady) {
+      pageStartAwaitingReady = false;
+      return;
+    }
+    beginDocument();
+    readyAwaitingPageStart = true;
+  }
+
+  // collect the message and make sure a flush is scheduled on the next main-thread frame
+  private void enqueueBatch(String messageJSON, String callbackId) {
+    synchronized (pendingBatch) {
+      pendingBatch.add(messageJSON);
+      if (callbackId != null) {
+        pendingBatchCallbackIds.add(callbackId);
       }
-      if (message.data != null) {
-        jo.put("data", message.data);
+      if (batchScheduled) {
+        return;
       }
-      if (message.handlerName != null) {
-        jo.put("handlerName", message.handlerName);
+      batchScheduled = true;
+    }
+    if (Looper.getMainLooper() == Looper.myLooper()) {
+      Choreographer.getInstance().postFrameCallback(batchFrameCallback);
+    } else {
+      mainThreadHandler.sendEmptyMessage(SCHEDULE_BATCH);
+    }
+  }
+
+  // deliver every message collected since the last frame in one _handleMessageFromJava call
+  private void flushBatch() {
+    StringBuilder json;
+    ArrayList<String> callbackIds;
+    synchronized (pendingBatch) {
+      batchScheduled = false;
+      int size = pendingBatch.size();
+      if (size == 0) {
+        return;
+      }
+      json = new StringBuilder("[");
+      for (int i = 0; i < size; i++) {
+        if (i > 0) {
+          json.append(',');
+        }
+        json.append(pendingBatch.get(i));
+      }
+      json.append(']');
+      pendingBatch.clear();
+      callbackIds = pendingBatchCallbackIds;
+      pendingBatchCallbackIds = new ArrayList<>();
+      dispatchedBatchCount++;
+      dispatchedBatchMessageCount += size;
+      lastDispatchedBatchSize = size;
+      if (size > largestDispatchedBatchSize) {
+        largestDispatchedBatchSize = size;
       }
-      if (message.responseId != null) {
-        jo.put("responseId", message.responseId);
+    }
+    deliverToJavascript(json.toString(), callbackIds);
+  }
+
+  // called with the raw message from javascript, parsing is moved off the main thread
+  void receiveMessage(final String info) {
+    getParserHandler().post(new Runnable() {
+      @Override
+      public void run() {
+        parseMessage(info);
       }
-      if (message.responseData != null) {
-        jo.put("responseData", message.responseData);
+    });
+  }
+
+  // runs on the parser thread, only the handler or callback invocation is posted to the main thread
+  private void parseMessage(String info) {
+    stats.recordIncoming(info.length());
+    try {
+      WVJBMessage message = codec.decode(info);
+      if (message.responseId != null) {
+        final WVJBResponseCallback responseCallback = responseCallbacks.remove(message.responseId);
+        if (responseCallback == null) {
+          return;
+        }
+        final Object responseData = responseCallback instanceof WVJBRawResponseCallback
+            ? message.responseData : WVJBMessageCodec.materialize(message.responseData);
+        mainThreadHandler.post(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              responseCallback.onResult(responseData);
+            } catch (Exception e) {
+              stats.recordHandlerError();
+              e.printStackTrace();
+            }
+          }
+        });
+        return;
+      }
+      if (message.handlerName == null) {
+        throw new JSONException("Message has neither a handlerName nor a responseId: " + info);
+      }
+      HandlerRegistration registration = messageHandlers.get(message.handlerName);
+      if (registration == null) {
+        stats.recordUnknownHandler();
+        return;
+      }
+      final String handlerName = message.handlerName;
+      final WVJBHandler handler = registration.handler;
+      final Object data = handler instanceof WVJBRawHandler
+          ? message.data : WVJBMessageCodec.materialize(message.data);
+      final WVJBResponseCallback responseCallback =
+          message.callbackId == null ? null : createResponseCallback(message.callbackId);
+      Runnable invocation = new Runnable() {
+        @Override
+        public void run() {
+          long start = SystemClock.elapsedRealtime();
+          try {
+            handler.handler(data, responseCallback);
+          } catch (Exception e) {
+            stats.recordHandlerError();
+            e.printStackTrace();
+          }
+          stats.recordHandlerCall(handlerName, SystemClock.elapsedRealtime() - start);
+        }
+      };
+      if (registration.executor != null) {
+        registration.executor.execute(invocation);
+      } else {
+        mainThreadHandler.post(invocation);
       }
     } catch (JSONException e) {
+      stats.recordParseError();
+      e.printStackTrace();
+    } catch (Exception e) {
+      stats.recordHandlerError();
       e.printStackTrace();
     }
-    return jo;
   }
 
-  private WVJBMessage JSONObject2WVJBMessage(JSONObject jo) {
-    WVJBMessage message = new WVJBMessage();
-    try {
-      if (jo.has("callbackId")) {
-        message.callbackId = jo.getString("callbackId");
-      }
-      if (jo.has("data")) {
-        message.data = jo.get("data");
-      }
-      if (jo.has("handlerName")) {
-        message.handlerName = jo.getString("handlerName");
-      }
-      if (jo.has("responseId")) {
-        message.responseId = jo.getString("responseId");
+  // the callback may be completed from any thread, only the first result or error is sent to
+  // javascript
+  private WVJBResponseCallback createResponseCallback(final String callbackId) {
+    final AtomicBoolean completed = new AtomicBoolean(false);
+    return new WVJBErrorResponseCallback() {
+      @Override
+      public void onError(String code, String message) {
+        if (!completed.compareAndSet(false, true)) {
+          return;
+        }
+        Map<String, Object> error = new HashMap<>();
+        error.put("code", code);
+        error.put("message", message);
+        WVJBMessage msg = new WVJBMessage();
+        msg.responseId = callbackId;
+        msg.responseError = error;
+        dispatchMessage(msg);
       }
-      if (jo.has("responseData")) {
-        message.responseData = jo.get("responseData");
+
+      @Override
+      public void onResult(Object data) {
+        Object responseData =
+            data == null || data instanceof WVJBRawData ? data : WVJBRawData.encode(data);
+        if (!completed.compareAndSet(false, true)) {
+          return;
+        }
+        WVJBMessage msg = new WVJBMessage();
+        msg.responseId = callbackId;
+        msg.responseData = responseData;
+        dispatchMessage(msg);
       }
-    } catch (JSONException e) {
-      e.printStackTrace();
+    };
+  }
+
+  private static synchronized Handler getParserHandler() {
+    if (parserHandler == null) {
+      HandlerThread thread = new HandlerThread(PARSER_THREAD_NAME);
+      thread.start();
+      parserHandler = new Handler(thread.getLooper());
     }
-    return message;
+    return parserHandler;
   }
 
   void init() {
     mainThreadHandler = new MyHandler(getContext());
     APP_CACHE_DIRNAME = getContext().getFilesDir().getAbsolutePath() + "/webcache";
-    this.responseCallbacks = new HashMap<>();
-    this.messageHandlers = new HashMap<>();
-    this.startupMessageQueue = new ArrayList<>();
+    initBridgeState();
+    applyDefaultSettings();
+    this.removeJavascriptInterface("accessibility");
+    this.removeJavascriptInterface("accessibilityTraversal");
+    this.removeJavascriptInterface("searchBoxJavaBridge_");
+    super.setWebChromeClient(mWebChromeClient);
+    super.setWebViewClient(mWebViewClient);
+    registerBuiltInHandlers();
+    if (Build.VERSION.SDK_INT > Build.VERSION_CODES.JELLY_BEAN) {
+      super.addJavascriptInterface(new Object() {
+        @JavascriptInterface
+        public void notice(String info) {
+          receiveMessage(info);
+        }
+
+        @JavascriptInterface
+        public int chunkSize() {
+          return chunkTransfer.getChunkThreshold();
+        }
+
+        @JavascriptInterface
+        public boolean noticeChunk(int id, String chunk, boolean last) {
+          return chunkTransfer.receiveChunk(id, chunk, last);
+        }
+
+      }, BRIDGE_NAME);
+    }
+  }
+
+  /**
+   * Returns the bridge to the state of a newly created web view so the web view can be used again:
+   * calls still waiting for javascript expire with {@link #CALLBACK_CANCELLED}, queued messages
+   * are dropped, handlers, clients and listeners are removed, options and statistics go back to
+   * their defaults and the settings made by the bridge are applied again. Loading a blank page and
+   * clearing the history is up to the caller. Must be called on the main thread.
+   */
+  public void reset() {
+    mainThreadHandler.removeCallbacksAndMessages(null);
+    responseCallbacks.cancelAll();
+    chunkTransfer.reset();
+    portTransport.disconnect();
+    scriptInjector.removeFromDocumentStart();
+    Choreographer.getInstance().removeFrameCallback(batchFrameCallback);
+    synchronized (pendingBatch) {
+      pendingBatch.clear();
+      pendingBatchCallbackIds.clear();
+      batchScheduled = false;
+      dispatchedBatchCount = 0;
+      dispatchedBatchMessageCount = 0;
+      lastDispatchedBatchSize = 0;
+      largestDispatchedBatchSize = 0;
+    }
+    messageBatchingEnabled = false;
+    messagePortTransportEnabled = false;
+    defaultCallbackTimeoutMillis = 0;
+    alertboxBlock = true;
+    javascriptCloseWindowListener = null;
+    webChromeClient = null;
+    webViewClient = null;
+    readyAwaitingPageStart = false;
+    pageStartAwaitingReady = false;
+    initBridgeState();
+    applyDefaultSettings();
+    registerBuiltInHandlers();
+  }
+
+  // messages from the previous use that are still being parsed find neither its handlers nor its
+  // callbacks, they belong to the replaced objects
+  private synchronized void initBridgeState() {
+    stats = new WVJBBridgeStats();
+    scriptInjector = new WVJBScriptInjector(this);
+    responseCallbacks = new WVJBCallbackRegistry(mainThreadHandler, stats);
+    chunkTransfer = new WVJBChunkTransfer(this, mainThreadHandler);
+    portTransport = new WVJBMessagePortTransport(this);
+    messageHandlers = new ConcurrentHashMap<>();
+    startupMessageQueue = new ArrayList<>();
+  }
+
+  private void applyDefaultSettings() {
     WebSettings settings = getSettings();
     settings.setDomStorageEnabled(true);
     if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
@@ -337,23 +923,25 @@ public class WVJBWebView extends WebView {
     settings.setSaveFormData(false);
     settings.setAllowContentAccess(true);
     settings.setRenderPriority(WebSettings.RenderPriority.HIGH);
-    this.removeJavascriptInterface("accessibility");
-    this.removeJavascriptInterface("accessibilityTraversal");
-    this.removeJavascriptInterface("searchBoxJavaBridge_");
-    super.setWebChromeClient(mWebChromeClient);
-    super.setWebViewClient(mWebViewClient);
+  }
 
+  private void registerBuiltInHandlers() {
     registerHandler("_hasNativeMethod", new WVJBHandler() {
       @Override
       public void handler(Object data, WVJBResponseCallback callback) {
-        callback.onResult(messageHandlers.get(data) != null);
+        callback.onResult(data != null && messageHandlers.get(data) != null);
       }
     });
     registerHandler("_closePage", new WVJBHandler() {
       @Override
       public void handler(Object data, WVJBResponseCallback callback) {
         if (javascriptCloseWindowListener == null || javascriptCloseWindowListener.onClose()) {
-          ((Activity) getContext()).onBackPressed();
+          Context context = getContext();
+          // pooled web views are created on a wrapper whose base is the activity showing them
+          if (context instanceof MutableContextWrapper) {
+            context = ((MutableContextWrapper) context).getBaseContext();
+          }
+          ((Activity) context).onBackPressed();
         }
       }
     });
@@ -363,16 +951,18 @@ public class WVJBWebView extends WebView {
         disableJavascriptAlertBoxSafetyTimeout((boolean) data);
       }
     });
-    if (Build.VERSION.SDK_INT > Build.VERSION_CODES.JELLY_BEAN) {
-      super.addJavascriptInterface(new Object() {
-        @JavascriptInterface
-        public void notice(String info) {
-          Message msg = mainThreadHandler.obtainMessage(HANDLE_MESSAGE, info);
-          mainThreadHandler.sendMessage(msg);
+    registerHandler("_bridgeReady", new WVJBHandler() {
+      @Override
+      public void handler(Object data, WVJBResponseCallback callback) {
+        scriptInjector.onBridgeReady();
+        onDocumentBridgeReady();
+        // one channel per document, a live one is never replaced
+        if (messagePortTransportEnabled && !portTransport.isConnected()) {
+          portTransport.connect();
         }
-
-      }, BRIDGE_NAME);
-    }
+        flushStartupMessageQueue();
+      }
+    });
 
   }
 
@@ -407,6 +997,7 @@ public class WVJBWebView extends WebView {
    */
   @Override
   public void loadUrl(String url) {
+    scriptInjector.onLoadUrl();
     Message msg = mainThreadHandler.obtainMessage(LOAD_URL, url);
     mainThreadHandler.sendMessage(msg);
   }
@@ -420,11 +1011,24 @@ public class WVJBWebView extends WebView {
    */
   @Override
   public void loadUrl(String url, Map<String, String> additionalHttpHeaders) {
+    scriptInjector.onLoadUrl();
     Message msg = mainThreadHandler.obtainMessage(LOAD_URL_WITH_HEADERS,
         new RequestInfo(url, additionalHttpHeaders));
     mainThreadHandler.sendMessage(msg);
   }
 
+  /**
+   * Expires the calls still waiting for javascript with {@link #CALLBACK_CANCELLED} and drops
+   * messages in flight before the web view is destroyed.
+   */
+  @Override
+  public void destroy() {
+    responseCallbacks.cancelAll();
+    chunkTransfer.reset();
+    portTransport.disconnect();
+    super.destroy();
+  }
+
   // proxy client
   WebChromeClient webChromeClient;
   WebViewClient webViewClient;
@@ -444,27 +1048,10 @@ public class WVJBWebView extends WebView {
     @Override
     public void onProgressChanged(WebView view, int newProgress) {
 
-      if (newProgress > 80) {
-        try {
-          InputStream is = view.getContext().getAssets().open("WebViewJavascriptBridge.js");
-          int size = is.available();
-          byte[] buffer = new byte[size];
-          is.read(buffer);
-          is.close();
-          String js = new String(buffer);
-          evaluateJavascript(js);
-        } catch (IOException e) {
-          e.printStackTrace();
-        }
-
-        synchronized (WVJBWebView.this) {
-          if (startupMessageQueue != null) {
-            for (int i = 0; i < startupMessageQueue.size(); i++) {
-              dispatchMessage(startupMessageQueue.get(i));
-            }
-            startupMessageQueue = null;
-          }
-        }
+      // with a document start script the queue is flushed by the bridge ready handshake instead
+      if (newProgress > 80 && !scriptInjector.isInstalledAtDocumentStart()) {
+        scriptInjector.injectIfNeeded();
+        flushStartupMessageQueue();
       }
 
       if (webChromeClient != null) {
@@ -613,8 +1200,7 @@ public class WVJBWebView extends WebView {
       if (Build.VERSION.SDK_INT <= Build.VERSION_CODES.JELLY_BEAN) {
         String prefix = "_wvjbxx";
         if (message.equals(prefix)) {
-          Message msg = mainThreadHandler.obtainMessage(HANDLE_MESSAGE, defaultValue);
-          mainThreadHandler.sendMessage(msg);
+          receiveMessage(defaultValue);
         }
         return true;
       }
@@ -799,6 +1385,8 @@ public class WVJBWebView extends WebView {
 
     @Override
     public void onPageStarted(WebView view, String url, Bitmap favicon) {
+      scriptInjector.onPageStarted();
+      onDocumentPageStarted();
       if (webViewClient != null) {
         webViewClient.onPageStarted(view, url, favicon);
       } else {
@@ -809,6 +1397,11 @@ public class WVJBWebView extends WebView {
 
     @Override
     public void onPageFinished(WebView view, String url) {
+      // the document start handshake arrives long before the page finishes, a document that did
+      // not send it by now has no bridge and the next handshake belongs to a new document
+      if (scriptInjector.isInstalledAtDocumentStart()) {
+        pageStartAwaitingReady = false;
+      }
 
       if (webViewClient != null) {
         webViewClient.onPageFinished(view, url);
@@ -0,0 +1,66 @@
+// Copyright 2013 The Flutter Authors. All rights reserved.
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package io.flutter.plugins.webviewflutter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import io.flutter.plugin.common.BinaryMessenger;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import org.junit.Test;
+
+public class FlutterWebViewPoolTest {
+  private static final long PAUSE = FlutterWebViewPool.WARM_UP_PAUSE_MILLIS;
+
+  private final FlutterWebViewPool pool =
+      new FlutterWebViewPool(
+          new BinaryMessenger() {
+            @Override
+            public void send(String channel, ByteBuffer message) {}
+
+            @Override
+            public void send(String channel, ByteBuffer message, BinaryReply callback) {}
+
+            @Override
+            public void setMessageHandler(String channel, BinaryMessageHandler handler) {}
+          },
+          null,
+          null);
+
+  @Test
+  public void warmUpResumesOncePressureIsGoneForThePause() {
+    assertFalse(pool.isWarmUpPaused(1000));
+
+    pool.pauseWarmUp(1000);
+
+    assertTrue(pool.isWarmUpPaused(1000));
+    assertTrue(pool.isWarmUpPaused(1000 + PAUSE - 1));
+    assertFalse(pool.isWarmUpPaused(1000 + PAUSE));
+  }
+
+  @Test
+  public void pressureDuringThePauseStartsItOver() {
+    pool.pauseWarmUp(1000);
+    pool.pauseWarmUp(20000);
+
+    assertTrue(pool.isWarmUpPaused(1000 + PAUSE));
+    assertFalse(pool.isWarmUpPaused(20000 + PAUSE));
+  }
+
+  @Test
+  public void pausedPoolKeepsItsSize() {
+    // SystemClock reports 0 in local unit tests, so the pool is still paused when it is resized
+    pool.pauseWarmUp(0);
+    pool.setSize(2, true);
+    pool.trim(0);
+
+    Map<String, Object> stats = pool.getStats();
+    assertEquals(2, stats.get("size"));
+    assertEquals(0, stats.get("available"));
+    assertEquals(true, stats.get("warmUpPaused"));
+  }
+}
@@ -0,0 +1,131 @@
+// Copyright 2013 The Flutter Authors. All rights reserved.
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package io.flutter.plugins.webviewflutter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Map;
+import org.junit.Test;
+
+public class JavaScriptChannelQueueTest {
+  @Test
+  public void onlyTheFirstMessageSchedulesADrain() {
+    JavaScriptChannelQueue queue = new JavaScriptChannelQueue("Tts");
+
+    assertTrue(queue.offer("a"));
+    assertFalse(queue.offer("b"));
+
+    queue.beginDrain();
+    assertEquals("a", queue.poll());
+    assertEquals("b", queue.poll());
+    assertNull(queue.poll());
+  }
+
+  @Test
+  public void messageOfferedAfterTheDrainFoundTheQueueEmptySchedulesADrain() {
+    JavaScriptChannelQueue queue = new JavaScriptChannelQueue("Tts");
+    assertTrue(queue.offer("a"));
+
+    queue.beginDrain();
+    assertEquals("a", queue.poll());
+    assertNull(queue.poll());
+    assertTrue(queue.offer("b"));
+  }
+
+  @Test
+  public void messageOfferedWhileDrainingIsPolledOrSchedulesADrain() {
+    JavaScriptChannelQueue queue = new JavaScriptChannelQueue("Tts");
+    assertTrue(queue.offer("a"));
+
+    queue.beginDrain();
+    assertEquals("a", queue.poll());
+    assertTrue(queue.offer("b"));
+    // the running drain still polls it, the drain scheduled for it then finds nothing
+    assertEquals("b", queue.poll());
+    assertNull(queue.poll());
+    queue.beginDrain();
+    assertNull(queue.poll());
+    assertTrue(queue.offer("c"));
+  }
+
+  @Test
+  public void dropNewestKeepsTheQueuedMessages() {
+    JavaScriptChannelQueue queue =
+        new JavaScriptChannelQueue("Tts", 2, JavaScriptChannelQueue.DROP_NEWEST);
+    queue.offer("a");
+    queue.offer("b");
+    queue.offer("c");
+
+    assertEquals("a", queue.poll());
+    assertEquals("b", queue.poll());
+    assertNull(queue.poll());
+    assertEquals(1L, queue.getStats().get("dropped"));
+  }
+
+  @Test
+  public void dropOldestMakesRoomForTheNewMessage() {
+    JavaScriptChannelQueue queue =
+        new JavaScriptChannelQueue("Tts", 2, JavaScriptChannelQueue.DROP_OLDEST);
+    queue.offer("a");
+    queue.offer("b");
+    queue.offer("c");
+
+    assertEquals("b", queue.poll());
+    assertEquals("c", queue.poll());
+    assertNull(queue.poll());
+    assertEquals(1L, queue.getStats().get("dropped"));
+  }
+
+  @Test
+  public void coalesceLatestKeepsOnlyTheNewMessage() {
+    JavaScriptChannelQueue queue =
+        new JavaScriptChannelQueue("Tts", 2, JavaScriptChannelQueue.COALESCE_LATEST);
+    queue.offer("a");
+    queue.offer("b");
+    queue.offer("c");
+
+    assertEquals("c", queue.poll());
+    assertNull(queue.poll());
+    assertEquals(2L, queue.getStats().get("dropped"));
+  }
+
+  @Test
+  public void statsReportDepthAndPeak() {
+    JavaScriptChannelQueue queue =
+        new JavaScriptChannelQueue("Tts", 4, JavaScriptChannelQueue.DROP_NEWEST);
+    queue.offer("a");
+    queue.offer("b");
+    queue.offer("c");
+    queue.poll();
+
+    Map<String, Object> stats = queue.getStats();
+    assertEquals(2, stats.get("depth"));
+    assertEquals(3, stats.get("peakDepth"));
+    assertEquals(4, stats.get("capacity"));
+    assertNull(new JavaScriptChannelQueue("Tts").getStats().get("capacity"));
+  }
+
+  @Test
+  public void parsesOverflowPolicies() {
+    assertEquals(
+        JavaScriptChannelQueue.DROP_OLDEST,
+        JavaScriptChannelQueue.parseOverflowPolicy("dropOldest"));
+    assertEquals(
+        JavaScriptChannelQueue.DROP_NEWEST,
+        JavaScriptChannelQueue.parseOverflowPolicy("dropNewest"));
+    assertEquals(
+        JavaScriptChannelQueue.COALESCE_LATEST,
+        JavaScriptChannelQueue.parseOverflowPolicy("coalesceLatest"));
+    try {
+      JavaScriptChannelQueue.parseOverflowPolicy("dropAll");
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+}
@@ -0,0 +1,61 @@
+// Copyright 2013 The Flutter Authors. All rights reserved.
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package io.flutter.plugins.webviewflutter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import io.flutter.plugins.webviewflutter.view.WVJBRawData;
+import io.flutter.plugins.webviewflutter.view.WVJBWebView;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class JsBridgeCallBatcherTest {
+  private static final class RecordingCallback
+      implements WVJBWebView.WVJBErrorResponseCallback<Object> {
+    final List<String> errorCodes = new ArrayList<>();
+    boolean answered = false;
+
+    @Override
+    public void onResult(Object data) {
+      answered = true;
+    }
+
+    @Override
+    public void onError(String code, String message) {
+      answered = true;
+      errorCodes.add(code);
+    }
+  }
+
+  // The bridge only creates raw data from text it received, which can be malformed.
+  private static WVJBRawData rawData(String json) throws Exception {
+    Constructor<WVJBRawData> constructor = WVJBRawData.class.getDeclaredConstructor(String.class);
+    constructor.setAccessible(true);
+    return constructor.newInstance(json);
+  }
+
+  @Test
+  public void callWithMalformedDataFailsRightAway() throws Exception {
+    JsBridgeCallBatcher batcher = new JsBridgeCallBatcher(null);
+    RecordingCallback callback = new RecordingCallback();
+
+    batcher.createHandler("save").handler(rawData("{\"a\":tru"), callback);
+
+    assertTrue(callback.answered);
+    assertEquals(1, callback.errorCodes.size());
+    assertEquals("invalidData", callback.errorCodes.get(0));
+  }
+
+  @Test
+  public void callWithMalformedDataAndNoCallbackIsDropped() throws Exception {
+    JsBridgeCallBatcher batcher = new JsBridgeCallBatcher(null);
+
+    // would throw if the call were queued, there is no Choreographer in local unit tests
+    batcher.createHandler("log").handler(rawData("[1,"), null);
+  }
+}
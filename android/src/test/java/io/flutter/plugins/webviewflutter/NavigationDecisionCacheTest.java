@@ -0,0 +1,89 @@
+// Copyright 2013 The Flutter Authors. All rights reserved.
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package io.flutter.plugins.webviewflutter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Map;
+import org.junit.Test;
+
+// SystemClock.elapsedRealtime() returns 0 in unit tests, entries expire only with a ttl of 0.
+public class NavigationDecisionCacheTest {
+  @Test
+  public void remembersDecisionsToNavigate() {
+    NavigationDecisionCache cache = new NavigationDecisionCache(8, 1000, false);
+    cache.put("https://flutter.dev/docs", true);
+
+    assertEquals(Boolean.TRUE, cache.get("https://flutter.dev/docs"));
+  }
+
+  @Test
+  public void denialsAreOnlyRememberedWhenCached() {
+    NavigationDecisionCache cache = new NavigationDecisionCache(8, 1000, false);
+    cache.put("https://flutter.dev/login", false);
+    assertNull(cache.get("https://flutter.dev/login"));
+
+    NavigationDecisionCache cachingDenials = new NavigationDecisionCache(8, 1000, true);
+    cachingDenials.put("https://flutter.dev/login", false);
+    assertEquals(Boolean.FALSE, cachingDenials.get("https://flutter.dev/login"));
+  }
+
+  @Test
+  public void urlsDifferingInFragmentOrSchemeAndHostCaseShareAnEntry() {
+    NavigationDecisionCache cache = new NavigationDecisionCache(8, 1000, false);
+    cache.put("HTTPS://Flutter.dev/Docs?q=1#intro", true);
+
+    assertEquals(Boolean.TRUE, cache.get("https://flutter.dev/Docs?q=1"));
+    assertNull(cache.get("https://flutter.dev/docs?q=1"));
+  }
+
+  @Test
+  public void normalizeLowerCasesOnlyUpToThePath() {
+    assertEquals(
+        "https://flutter.dev/A?B", NavigationDecisionCache.normalize("HTTPS://FLUTTER.DEV/A?B#C"));
+    assertEquals(
+        "https://flutter.dev?Q", NavigationDecisionCache.normalize("https://Flutter.dev?Q"));
+    assertEquals("about:Blank", NavigationDecisionCache.normalize("about:Blank#top"));
+  }
+
+  @Test
+  public void expiredEntriesAreMisses() {
+    NavigationDecisionCache cache = new NavigationDecisionCache(8, 0, false);
+    cache.put("https://flutter.dev", true);
+
+    assertNull(cache.get("https://flutter.dev"));
+    assertEquals(0, cache.toMap().get("size"));
+  }
+
+  @Test
+  public void leastRecentlyUsedEntryIsDroppedWhenFull() {
+    NavigationDecisionCache cache = new NavigationDecisionCache(2, 1000, false);
+    cache.put("https://a.dev", true);
+    cache.put("https://b.dev", true);
+    cache.get("https://a.dev");
+    cache.put("https://c.dev", true);
+
+    assertEquals(Boolean.TRUE, cache.get("https://a.dev"));
+    assertNull(cache.get("https://b.dev"));
+    assertEquals(Boolean.TRUE, cache.get("https://c.dev"));
+  }
+
+  @Test
+  public void clearReturnsTheNumberOfEntriesAndStatsCountHitsAndMisses() {
+    NavigationDecisionCache cache = new NavigationDecisionCache(8, 1000, false);
+    cache.put("https://a.dev", true);
+    cache.put("https://b.dev", true);
+    cache.get("https://a.dev");
+    cache.get("https://c.dev");
+
+    Map<String, Object> stats = cache.toMap();
+    assertEquals(1L, stats.get("hits"));
+    assertEquals(1L, stats.get("misses"));
+    assertEquals(false, stats.get("cacheDenials"));
+    assertEquals(2, cache.clear());
+    assertNull(cache.get("https://a.dev"));
+  }
+}
@@ -0,0 +1,99 @@
+// Copyright 2013 The Flutter Authors. All rights reserved.
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package io.flutter.plugins.webviewflutter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+public class NavigationRulesTest {
+  private static Map<String, Object> rule(
+      String decision, List<String> schemes, List<String> hostSuffixes, List<String> pathPrefixes) {
+    Map<String, Object> rule = new HashMap<>();
+    rule.put("decision", decision);
+    rule.put("schemes", schemes);
+    rule.put("hostSuffixes", hostSuffixes);
+    rule.put("pathPrefixes", pathPrefixes);
+    return rule;
+  }
+
+  private static List<String> list(String... values) {
+    return Arrays.asList(values);
+  }
+
+  @Test
+  public void hostSuffixesMatchWholeLabels() {
+    NavigationRules rules =
+        new NavigationRules(
+            Collections.singletonList(rule("allow", null, list("example.com"), null)));
+
+    assertEquals(NavigationRules.ALLOW, rules.match("https", "example.com", "/"));
+    assertEquals(NavigationRules.ALLOW, rules.match("https", "www.Example.COM", "/"));
+    assertEquals(NavigationRules.NO_MATCH, rules.match("https", "badexample.com", "/"));
+    assertEquals(NavigationRules.NO_MATCH, rules.match("https", "com", "/"));
+    assertEquals(NavigationRules.NO_MATCH, rules.match("about", null, "blank"));
+  }
+
+  @Test
+  public void allPartsOfARuleMustMatch() {
+    NavigationRules rules =
+        new NavigationRules(
+            Collections.singletonList(
+                rule("deny", list("HTTP"), list("example.com"), list("/login", "/admin"))));
+
+    assertEquals(NavigationRules.DENY, rules.match("http", "example.com", "/admin/users"));
+    assertEquals(NavigationRules.NO_MATCH, rules.match("https", "example.com", "/admin"));
+    assertEquals(NavigationRules.NO_MATCH, rules.match("http", "example.com", "/home"));
+    assertEquals(NavigationRules.NO_MATCH, rules.match("http", "example.org", "/login"));
+  }
+
+  @Test
+  public void firstMatchingRuleInListOrderDecides() {
+    List<Map<String, Object>> ruleMaps = new ArrayList<>();
+    ruleMaps.add(rule("deny", null, list("ads.example.com"), null));
+    ruleMaps.add(rule("allow", list("https"), null, null));
+    ruleMaps.add(rule("deny", null, list("example.com"), null));
+    NavigationRules rules = new NavigationRules(ruleMaps);
+
+    // an earlier rule without host suffixes wins over a later one for the host
+    assertEquals(NavigationRules.ALLOW, rules.match("https", "example.com", "/"));
+    assertEquals(NavigationRules.DENY, rules.match("http", "example.com", "/"));
+    // an earlier host rule wins over a later rule without host suffixes
+    assertEquals(NavigationRules.DENY, rules.match("https", "ads.example.com", "/"));
+  }
+
+  @Test
+  public void statsCountHitsPerRuleAndUnmatched() {
+    List<Map<String, Object>> ruleMaps = new ArrayList<>();
+    ruleMaps.add(rule("allow", null, list("flutter.dev"), null));
+    ruleMaps.add(rule("deny", list("http"), null, null));
+    NavigationRules rules = new NavigationRules(ruleMaps);
+
+    rules.match("https", "flutter.dev", "/");
+    rules.match("https", "docs.flutter.dev", "/");
+    rules.match("http", "example.com", "/");
+    rules.match("https", "example.com", "/");
+
+    Map<String, Object> stats = rules.getStats();
+    assertEquals(Arrays.asList(2L, 1L), stats.get("hits"));
+    assertEquals(1L, stats.get("unmatched"));
+  }
+
+  @Test
+  public void rejectsUnknownDecisions() {
+    try {
+      new NavigationRules(Collections.singletonList(rule("maybe", null, null, null)));
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+}
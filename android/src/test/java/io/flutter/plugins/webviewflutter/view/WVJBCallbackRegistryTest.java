@@ -0,0 +1,83 @@
+package io.flutter.plugins.webviewflutter.view;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.os.Handler;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class WVJBCallbackRegistryTest {
+  // Handler posts never run in local unit tests, so anything told through the handler is lost the
+  // same way it is when the web view clears its handler's queue.
+  private final WVJBCallbackRegistry registry =
+      new WVJBCallbackRegistry(new Handler(), new WVJBBridgeStats());
+
+  private static final class RecordingCallback
+      implements WVJBWebView.WVJBExpiringResponseCallback<Object> {
+    final List<Object> results = new ArrayList<>();
+    final List<Integer> expired = new ArrayList<>();
+
+    @Override
+    public void onResult(Object data) {
+      results.add(data);
+    }
+
+    @Override
+    public void onExpired(int reason) {
+      expired.add(reason);
+    }
+  }
+
+  @Test
+  public void cancelAllTellsEveryPendingCallbackRightAway() {
+    RecordingCallback dispatched = new RecordingCallback();
+    RecordingCallback queued = new RecordingCallback();
+    registry.markDispatched(registry.add(dispatched, 0, "echo"), 0);
+    registry.add(queued, 1000, "echo");
+
+    registry.cancelAll();
+
+    assertEquals(1, dispatched.expired.size());
+    assertEquals(WVJBWebView.CALLBACK_CANCELLED, (int) dispatched.expired.get(0));
+    assertEquals(1, queued.expired.size());
+    assertEquals(WVJBWebView.CALLBACK_CANCELLED, (int) queued.expired.get(0));
+    assertTrue(dispatched.results.isEmpty());
+    assertEquals(0, registry.size());
+    assertEquals(2, registry.getCancelledCount());
+  }
+
+  @Test
+  public void cancelledCallbackIsNotAnsweredLater() {
+    RecordingCallback callback = new RecordingCallback();
+    String callbackId = registry.add(callback, 0, "echo");
+
+    registry.cancelAll();
+
+    assertNull(registry.remove(callbackId));
+    assertEquals(1, callback.expired.size());
+  }
+
+  @Test
+  public void callsDroppedWithTheirChunksExpire() {
+    RecordingCallback chunked = new RecordingCallback();
+    RecordingCallback dispatched = new RecordingCallback();
+    String chunkedId = registry.add(chunked, 0, "echo");
+    registry.markDispatched(registry.add(dispatched, 0, "echo"), 0);
+    WVJBChunkTransfer chunkTransfer = new WVJBChunkTransfer(null, new Handler());
+    chunkTransfer.setChunkThreshold(4);
+    assertEquals(WVJBChunkTransfer.QUEUED, chunkTransfer.send("{\"data\":\"long\"}", chunkedId));
+    assertEquals(WVJBChunkTransfer.QUEUED, chunkTransfer.send("{}", null));
+
+    List<String> dropped = chunkTransfer.reset();
+    registry.expireUnsent(dropped);
+
+    assertEquals(1, dropped.size());
+    assertEquals(chunkedId, dropped.get(0));
+    assertNull(registry.remove(chunkedId));
+    assertEquals(1, registry.size());
+    assertEquals(1, registry.getPageChangedCount());
+  }
+}
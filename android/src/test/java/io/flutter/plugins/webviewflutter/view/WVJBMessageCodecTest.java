@@ -0,0 +1,100 @@
+package io.flutter.plugins.webviewflutter.view;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+public class WVJBMessageCodecTest {
+  private final WVJBMessageCodec codec = new WVJBMessageCodec();
+
+  @Test
+  public void encodeWritesSetFieldsInEnvelopeOrder() {
+    WVJBWebView.WVJBMessage message = new WVJBWebView.WVJBMessage();
+    message.handlerName = "echo";
+    message.callbackId = "cb_1";
+    message.data = Collections.singletonMap("key", Arrays.asList(1, "two", null, true));
+
+    assertEquals(
+        "{\"callbackId\":\"cb_1\",\"data\":{\"key\":[1,\"two\",null,true]},"
+            + "\"handlerName\":\"echo\"}",
+        codec.encode(message));
+  }
+
+  @Test
+  public void encodeWritesResponseError() {
+    WVJBWebView.WVJBMessage message = new WVJBWebView.WVJBMessage();
+    message.responseId = "cb_2";
+    message.responseError = Collections.singletonMap("code", "denied");
+
+    assertEquals(
+        "{\"responseId\":\"cb_2\",\"responseError\":{\"code\":\"denied\"}}",
+        codec.encode(message));
+  }
+
+  @Test
+  public void decodeKeepsObjectsAndArraysRaw() throws Exception {
+    WVJBWebView.WVJBMessage message =
+        codec.decode(
+            "{\"handlerName\":\"h\",\"unknown\":{\"x\":[1]},\"data\":{\"a\":[1, {\"b\":\"}\"}]},"
+                + "\"callbackId\":\"cb_3\"}");
+
+    assertEquals("h", message.handlerName);
+    assertEquals("cb_3", message.callbackId);
+    assertTrue(message.data instanceof WVJBRawData);
+    assertEquals("{\"a\":[1, {\"b\":\"}\"}]}", ((WVJBRawData) message.data).toJson());
+    assertNull(message.responseId);
+  }
+
+  @Test
+  public void decodeReadsEscapedStrings() throws Exception {
+    WVJBWebView.WVJBMessage message = codec.decode("{\"data\":\"a\\\"b\\n\\u00e9\"}");
+
+    assertEquals("a\"b\n\u00e9", message.data);
+  }
+
+  @Test
+  public void decodeAsCollectionsReadsNumbersByRange() throws Exception {
+    List<?> values =
+        (List<?>) WVJBMessageCodec.decodeAsCollections("[1,4294967296,12345678901234567890,1.5]");
+
+    assertEquals(Arrays.<Object>asList(1, 4294967296L, 1.2345678901234567E19, 1.5), values);
+  }
+
+  @Test
+  public void decodeAsCollectionsReadsNestedValues() throws Exception {
+    Map<?, ?> map =
+        (Map<?, ?>) WVJBMessageCodec.decodeAsCollections("{\"a\":{\"b\":[]},\"c\":null}");
+
+    assertEquals(Collections.singletonMap("b", Collections.emptyList()), map.get("a"));
+    assertTrue(map.containsKey("c"));
+    assertNull(map.get("c"));
+  }
+
+  @Test
+  public void toJsonWritesPrimitiveArrays() {
+    assertEquals("[1,2]", WVJBMessageCodec.toJson(new int[] {1, 2}));
+    assertEquals("[1.5,2]", WVJBMessageCodec.toJson(new double[] {1.5, 2}));
+    assertEquals("[0.1,null]", WVJBMessageCodec.toJson(new float[] {0.1f, Float.NaN}));
+  }
+
+  @Test
+  public void toJsonEscapesScriptLineTerminators() {
+    assertEquals("\"a\\u2028b\\u0001\"", WVJBMessageCodec.toJson("a\u2028b\u0001"));
+  }
+
+  @Test
+  public void toJsonRejectsUnsupportedTypes() {
+    try {
+      WVJBMessageCodec.toJson(Collections.singletonList(new Object()));
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+}
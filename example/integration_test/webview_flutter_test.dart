@@ -148,6 +148,117 @@ void main() {
     expect(messagesReceived, equals(<String>['hello']));
   });
 
+  testWidgets('binary channel throughput compared to a JavaScriptChannel',
+      (WidgetTester tester) async {
+    const int messageCount = 50;
+    const int messageSize = 256 * 1024;
+    final String binaryTest = '''
+      <!DOCTYPE html><html>
+      <head><title>Binary channel test</title>
+        <script type="text/javascript">
+          function payload(i) {
+            var bytes = new Uint8Array($messageSize);
+            for (var j = 0; j < bytes.length; j++) {
+              bytes[j] = (i + j) & 0xff;
+            }
+            return bytes;
+          }
+          function sendBinary() {
+            for (var i = 0; i < $messageCount; i++) {
+              Binary.postMessage(payload(i).buffer);
+            }
+          }
+          function sendStrings() {
+            for (var i = 0; i < $messageCount; i++) {
+              var bytes = payload(i);
+              var text = '';
+              for (var j = 0; j < bytes.length; j += 8192) {
+                text += String.fromCharCode.apply(null, bytes.subarray(j, j + 8192));
+              }
+              Echo.postMessage(btoa(text));
+            }
+          }
+          Binary.onmessage = function (event) {
+            Echo.postMessage('received ' + event.data.byteLength);
+          };
+        </script>
+      </head>
+      <body></body>
+      </html>
+    ''';
+    final String binaryTestBase64 =
+        base64Encode(const Utf8Encoder().convert(binaryTest));
+    final Completer<WebViewController> controllerCompleter =
+        Completer<WebViewController>();
+    final Completer<void> pageLoaded = Completer<void>();
+    final StreamController<int> binaryMessages = StreamController<int>();
+    final StreamController<String> stringMessages =
+        StreamController<String>();
+
+    await tester.pumpWidget(
+      Directionality(
+        textDirection: TextDirection.ltr,
+        child: WebView(
+          key: GlobalKey(),
+          initialUrl: 'data:text/html;charset=utf-8;base64,$binaryTestBase64',
+          onWebViewCreated: (WebViewController controller) {
+            controller.setBinaryMessageHandler((ByteData message) {
+              binaryMessages.add(message.lengthInBytes);
+            });
+            controllerCompleter.complete(controller);
+          },
+          javascriptMode: JavascriptMode.unrestricted,
+          javascriptChannels: <JavascriptChannel>{
+            JavascriptChannel(
+              name: 'Echo',
+              onMessageReceived: (JavascriptMessage message) {
+                stringMessages.add(message.message);
+              },
+            ),
+          },
+          platformOptions: const <String, dynamic>{
+            'javascriptBinaryChannel': 'Binary',
+          },
+          onPageFinished: (String url) {
+            pageLoaded.complete(null);
+          },
+        ),
+      ),
+    );
+    final WebViewController controller = await controllerCompleter.future;
+    await pageLoaded.future;
+    final Stream<int> binaryStream = binaryMessages.stream.asBroadcastStream();
+    final Stream<String> stringStream =
+        stringMessages.stream.asBroadcastStream();
+
+    final Stopwatch binaryWatch = Stopwatch()..start();
+    final Future<List<int>> binaryReceived =
+        binaryStream.take(messageCount).toList();
+    await controller.evaluateJavascript('sendBinary();1;');
+    final List<int> binarySizes = await binaryReceived;
+    binaryWatch.stop();
+    expect(binarySizes, everyElement(messageSize));
+
+    final Stopwatch stringWatch = Stopwatch()..start();
+    final Future<List<String>> stringsReceived =
+        stringStream.take(messageCount).toList();
+    await controller.evaluateJavascript('sendStrings();1;');
+    final List<String> strings = await stringsReceived;
+    stringWatch.stop();
+    expect(strings.map((String s) => base64Decode(s).length),
+        everyElement(messageSize));
+
+    const double megabytes = messageCount * messageSize / (1024 * 1024);
+    print('binary channel: '
+        '${(megabytes * 1000 / binaryWatch.elapsedMilliseconds).toStringAsFixed(1)} MB/s, '
+        'base64 JavaScriptChannel: '
+        '${(megabytes * 1000 / stringWatch.elapsedMilliseconds).toStringAsFixed(1)} MB/s');
+
+    final Future<String> echo = stringStream.first;
+    await controller.sendBinaryMessage(ByteData(1024));
+    expect(await echo, 'received 1024');
+  }, skip: !Platform.isAndroid);
+
   testWidgets('resize webview', (WidgetTester tester) async {
     final String resizeTest = '''
         <!DOCTYPE html><html>
@@ -293,6 +293,94 @@ abstract class WebViewPlatformController {
     throw UnimplementedError("WebView callHandler is not implemented on the current platform");
   }
 
+  /// Calls the JavaScript bridge handler `handlerName` with `data` and completes with its response.
+  ///
+  /// Unlike [callHandler], which hands the handler its parameters as a JSON string, `data` reaches
+  /// the handler as the JavaScript value it encodes to. `data` may be any value supported by the
+  /// platform channel's `StandardMessageCodec`, and so is the response.
+  ///
+  /// Any number of calls can wait for a response at once. A call fails with a [PlatformException]
+  /// whose code is `timeout` when `timeout` passes first, `pageChanged` when a new page loads
+  /// first, `evicted` or `rejected` when the bridge is over its limits, and `cancelled` when the
+  /// WebView is disposed. Without a `timeout` the call waits until the page changes.
+  Future<Object?> callHandlerWithData(String handlerName, Object? data, {Duration? timeout}) {
+    throw UnimplementedError("WebView callHandlerWithData is not implemented on the current platform");
+  }
+
+  /// Returns the queue counters of the JavaScript channels that have a queue, by channel name.
+  ///
+  /// Each entry holds the current `depth`, the `peakDepth`, the number of `dropped` messages and
+  /// the `capacity`, which is null for channels without a limit.
+  Future<Map<String, dynamic>> getJavascriptChannelStats() {
+    throw UnimplementedError(
+        "WebView getJavascriptChannelStats is not implemented on the current platform");
+  }
+
+  /// Sends `message` to the page's binary channel, where it arrives as an `ArrayBuffer`.
+  ///
+  /// The returned future completes with a [PlatformException] whose code is `noPageConnected`
+  /// when the current page has not posted to the channel yet, the message is then dropped. A page
+  /// that starts loading disconnects the previous one.
+  Future<void> sendBinaryMessage(ByteData message) {
+    throw UnimplementedError(
+        "WebView sendBinaryMessage is not implemented on the current platform");
+  }
+
+  /// Sets the handler that receives the messages the page posts to its binary channel.
+  ///
+  /// Passing null removes the handler, messages then are dropped.
+  void setBinaryMessageHandler(void Function(ByteData message)? handler) {
+    throw UnimplementedError(
+        "WebView setBinaryMessageHandler is not implemented on the current platform");
+  }
+
+  /// Replaces the rules that decide navigations without a round trip to the navigation delegate.
+  ///
+  /// Navigations in any frame are matched against `rules` and the first matching rule decides.
+  /// Navigations no rule matches go to the navigation delegate as before. An empty list removes
+  /// all rules.
+  Future<void> setNavigationRules(List<NavigationRule> rules) {
+    throw UnimplementedError(
+        "WebView setNavigationRules is not implemented on the current platform");
+  }
+
+  /// Returns how many navigations each rule decided, as a `hits` list in rule order, and how many
+  /// matched no rule, as `unmatched`. With the `navigationDecisionCache` platform option the
+  /// cache counters are included as `decisionCache`.
+  Future<Map<String, dynamic>> getNavigationRuleStats() {
+    throw UnimplementedError(
+        "WebView getNavigationRuleStats is not implemented on the current platform");
+  }
+
+  /// Keeps the web view resumed or paused whatever its visibility, or lets it follow its
+  /// visibility again with [WebViewLifecycleOverride.automatic].
+  Future<void> setLifecycleOverride(WebViewLifecycleOverride override) {
+    throw UnimplementedError(
+        "WebView setLifecycleOverride is not implemented on the current platform");
+  }
+
+  /// Returns whether the web view is `visible` and `paused`, its `pauseCount` and `pausedMillis`,
+  /// and how long JavaScript timers of all web views were paused and running.
+  ///
+  /// Timers are counted as `timersPauseCount`, `timersPausedMillis` and `timersRunningMillis`,
+  /// and the CPU time of the process in each state as `cpuMillisWhileTimersPaused` and
+  /// `cpuMillisWhileTimersRunning`. `estimatedCpuMillisSaved` is the CPU time the process would
+  /// have used while timers were paused at the rate it used while they were running, minus what it
+  /// did use, as a rough measure of the battery saved. Timers stay running while pooled web views
+  /// load pages off screen, `timerHolds` counts those loads.
+  Future<Map<String, dynamic>> getLifecycleStats() {
+    throw UnimplementedError(
+        "WebView getLifecycleStats is not implemented on the current platform");
+  }
+
+  /// Returns a snapshot of the JavaScript bridge metrics.
+  ///
+  /// The snapshot holds per handler call counts and latency histograms, message sizes, startup queue
+  /// depth and wait times, batching and script injection timings, and error counters.
+  Future<Map<String, dynamic>> getBridgeStats() {
+    throw UnimplementedError("WebView getBridgeStats is not implemented on the current platform");
+  }
+
   /// Set the scrolled position of this view.
   ///
   /// The parameters `x` and `y` specify the position to scroll to in WebView pixels.
@@ -326,6 +414,46 @@ abstract class WebViewPlatformController {
   }
 }
 
+/// Whether a web view follows its visibility or stays resumed or paused.
+enum WebViewLifecycleOverride {
+  /// The web view is paused once it has been hidden for the grace period of the `pauseWhenHidden`
+  /// platform option, and resumed when it is shown again.
+  automatic,
+
+  /// The web view is never paused.
+  resumed,
+
+  /// The web view is paused, even while it is visible.
+  paused,
+}
+
+/// A static rule that decides navigations natively, without asking the navigation delegate.
+///
+/// A rule matches a URL when its scheme, host and path all match. Empty lists match anything.
+class NavigationRule {
+  /// Constructs a rule that applies `decision` to the URLs it matches.
+  const NavigationRule({
+    required this.decision,
+    this.schemes = const <String>[],
+    this.hostSuffixes = const <String>[],
+    this.pathPrefixes = const <String>[],
+  });
+
+  /// Whether matching navigations are allowed or prevented.
+  final NavigationDecision decision;
+
+  /// The URL schemes the rule applies to, e.g. `https`.
+  final List<String> schemes;
+
+  /// The hosts the rule applies to, each also matching its subdomains.
+  ///
+  /// `example.com` matches `example.com` and `www.example.com`, but not `badexample.com`.
+  final List<String> hostSuffixes;
+
+  /// The prefixes of the URL path the rule applies to, e.g. `/login`.
+  final List<String> pathPrefixes;
+}
+
 /// A single setting for configuring a WebViewPlatform which may be absent.
 class WebSetting<T> {
   /// Constructs an absent setting instance.
@@ -456,6 +584,7 @@ class CreationParams {
     this.javascriptChannelNames = const <String>{},
     this.userAgent,
     this.autoMediaPlaybackPolicy = AutoMediaPlaybackPolicy.require_user_action_for_all_media_types,
+    this.platformOptions = const <String, dynamic>{},
   }) : assert(autoMediaPlaybackPolicy != null);
 
   /// The initialUrl to load in the webview.
@@ -489,6 +618,11 @@ class CreationParams {
   /// Which restrictions apply on automatic media playback.
   final AutoMediaPlaybackPolicy autoMediaPlaybackPolicy;
 
+  /// Platform specific options that can only be set when the webview is created.
+  ///
+  /// See [WebView.platformOptions] for the supported keys.
+  final Map<String, dynamic> platformOptions;
+
   @override
   String toString() {
     return '$runtimeType(initialUrl: $initialUrl, settings: $webSettings, javascriptChannelNames: $javascriptChannelNames, UserAgent: $userAgent)';
@@ -545,4 +679,59 @@ abstract class WebViewPlatform {
   Future<bool> clearCookies() {
     throw UnimplementedError("WebView clearCookies is not implemented on the current platform");
   }
+
+  /// Returns the counters of the pool of web views created ahead of time.
+  ///
+  /// The map holds the configured `size`, the number of `available` web views, whether creating
+  /// them is paused because memory ran low as `warmUpPaused`, the `hits` and `misses` of web views
+  /// that were created while the pool was enabled, the number of web views `created` for the pool,
+  /// and the warm-up time of the first one, which includes the engine initialization, as
+  /// `firstWarmUpMillis` and of all of them as `totalWarmUpMillis`. Web views kept by the
+  /// `recycleOnDispose` platform option are counted as `recycled`, up to
+  /// `maxRecycled`, with the number of web views that reused one as `recycledHits` and the number
+  /// that did not fit as `recycledDropped`. Preloading is counted as `preloaded` web views, up to
+  /// `maxPreloaded` and kept for `preloadTtlMillis`, the number of `preloadRequests`, the
+  /// `preloadHits` and `preloadMisses` of web views created since the first request, the
+  /// `preloadReloads` of web views that took a preloaded web view over but loaded it again, and the
+  /// preloaded web views that were dropped as `preloadExpired` and `preloadEvicted`.
+  Future<Map<String, dynamic>> getWebViewPoolStats() {
+    throw UnimplementedError(
+        "WebView getWebViewPoolStats is not implemented on the current platform");
+  }
+
+  /// Returns what the plugin released when the system ran low on memory.
+  ///
+  /// The map holds the number of `liveWebViews` and how often each step ran: clearing caches as
+  /// `clearCachesCount`, releasing the web views kept by the pool as `releasePooledCount` and
+  /// pausing hidden web views as `pauseHiddenCount`. Releasing the pool also pauses refilling it
+  /// until 30 seconds pass without memory pressure. The totals released are
+  /// `decisionCacheEntriesCleared`, `recycledReleased`, `preloadedReleased`, `preCreatedReleased`
+  /// and `webViewsPaused`. `recentTrims` lists the most recent trims, oldest first, each with the
+  /// trim `level`, its `timeMillis` since boot, the `liveWebViews` and the counts of the steps
+  /// that level ran.
+  Future<Map<String, dynamic>> getMemoryPressureStats() {
+    throw UnimplementedError(
+        "WebView getMemoryPressureStats is not implemented on the current platform");
+  }
+
+  /// Starts loading `url` off screen, with the JavaScript bridge, in a web view that a [WebView]
+  /// created later with `url` as its `initialUrl` takes over.
+  ///
+  /// The page loads with JavaScript enabled and with `userAgent`, or the default user agent when
+  /// null. It is only taken over as loaded by a [WebView] with [JavascriptMode.unrestricted], the
+  /// same user agent, and neither JavaScript channels, channel multiplexing nor a binary channel,
+  /// whose objects only exist in pages loaded after they were added. Any other [WebView] reuses
+  /// the web view but loads the page again, counted as `preloadReloads`.
+  ///
+  /// Completes with false when preloading is disabled.
+  Future<bool> preload(String url, {Map<String, String>? headers, String? userAgent}) {
+    throw UnimplementedError("WebView preload is not implemented on the current platform");
+  }
+
+  /// Limits the number of preloaded web views, the least recently preloaded one is dropped when a
+  /// new one goes over `maxEntries`, and how long a preloaded web view is kept, `ttl`.
+  Future<void> setPreloadLimits({int? maxEntries, Duration? ttl}) {
+    throw UnimplementedError(
+        "WebView setPreloadLimits is not implemented on the current platform");
+  }
 }
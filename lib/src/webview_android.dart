@@ -57,4 +57,22 @@ class AndroidWebView implements WebViewPlatform {
 
   @override
   Future<bool> clearCookies() => MethodChannelWebViewPlatform.clearCookies();
+
+  @override
+  Future<Map<String, dynamic>> getWebViewPoolStats() =>
+      MethodChannelWebViewPlatform.getWebViewPoolStats();
+
+  @override
+  Future<Map<String, dynamic>> getMemoryPressureStats() =>
+      MethodChannelWebViewPlatform.getMemoryPressureStats();
+
+  @override
+  Future<bool> preload(String url, {Map<String, String>? headers, String? userAgent}) =>
+      MethodChannelWebViewPlatform.preload(url,
+          headers: headers, userAgent: userAgent, usesHybridComposition: false);
+
+  @override
+  Future<void> setPreloadLimits({int? maxEntries, Duration? ttl}) =>
+      MethodChannelWebViewPlatform.setPreloadLimits(
+          maxEntries: maxEntries, ttl: ttl);
 }
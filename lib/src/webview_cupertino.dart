@@ -44,4 +44,22 @@ class CupertinoWebView implements WebViewPlatform {
 
   @override
   Future<bool> clearCookies() => MethodChannelWebViewPlatform.clearCookies();
+
+  @override
+  Future<Map<String, dynamic>> getWebViewPoolStats() => throw UnimplementedError(
+      "WebView getWebViewPoolStats is not implemented on the current platform");
+
+  @override
+  Future<Map<String, dynamic>> getMemoryPressureStats() => throw UnimplementedError(
+      "WebView getMemoryPressureStats is not implemented on the current platform");
+
+  @override
+  Future<bool> preload(String url, {Map<String, String>? headers, String? userAgent}) =>
+      throw UnimplementedError(
+          "WebView preload is not implemented on the current platform");
+
+  @override
+  Future<void> setPreloadLimits({int? maxEntries, Duration? ttl}) =>
+      throw UnimplementedError(
+          "WebView setPreloadLimits is not implemented on the current platform");
 }
@@ -4,9 +4,11 @@
 
 import 'dart:async';
 
+import 'package:flutter/foundation.dart';
 import 'package:flutter/services.dart';
 
 import '../platform_interface.dart';
+import '../webview_flutter.dart' show NavigationDecision;
 
 /// A [WebViewPlatformController] that uses a method channel to control the webview.
 class MethodChannelWebViewPlatform implements WebViewPlatformController {
@@ -14,7 +16,9 @@ class MethodChannelWebViewPlatform implements WebViewPlatformController {
   /// given [id], using the given [WebViewPlatformCallbacksHandler].
   MethodChannelWebViewPlatform(int id, this._platformCallbacksHandler)
       : assert(_platformCallbacksHandler != null),
-        _channel = MethodChannel('plugins.flutter.io/webview_$id') {
+        _channel = MethodChannel('plugins.flutter.io/webview_$id'),
+        _binaryChannel = BasicMessageChannel<ByteData>(
+            'plugins.flutter.io/webview_binary_$id', BinaryCodec()) {
     _channel.setMethodCallHandler(_onMethodCall);
   }
 
@@ -22,8 +26,15 @@ class MethodChannelWebViewPlatform implements WebViewPlatformController {
 
   final MethodChannel _channel;
 
+  final BasicMessageChannel<ByteData> _binaryChannel;
+
   static const MethodChannel _cookieManagerChannel = MethodChannel('plugins.flutter.io/cookie_manager');
 
+  static const MethodChannel _webViewPoolChannel = MethodChannel('plugins.flutter.io/webview_pool');
+
+  static const MethodChannel _webViewMemoryChannel =
+      MethodChannel('plugins.flutter.io/webview_memory');
+
   Future<dynamic> _onMethodCall(MethodCall call) async {
     switch (call.method) {
       case 'javascriptChannelMessage':
@@ -31,6 +42,14 @@ class MethodChannelWebViewPlatform implements WebViewPlatformController {
         final String message = call.arguments['message']!;
         _platformCallbacksHandler.onJavaScriptChannelMessage(channel, message);
         return true;
+      case 'javascriptChannelMessages':
+        final List<dynamic> channels = call.arguments['channels']!;
+        final List<dynamic> messages = call.arguments['messages']!;
+        for (int i = 0; i < messages.length; i += 2) {
+          _platformCallbacksHandler.onJavaScriptChannelMessage(
+              channels[messages[i]], messages[i + 1]);
+        }
+        return true;
       case 'navigationRequest':
         return await _platformCallbacksHandler.onNavigationRequest(
           url: call.arguments['url']!,
@@ -65,6 +84,8 @@ class MethodChannelWebViewPlatform implements WebViewPlatformController {
         return null;
       case "onJsBridgeCall":
         return _platformCallbacksHandler.onJsBridgeCall(call);
+      case "onJsBridgeCalls":
+        return _onJsBridgeCalls(call.arguments);
       case "dismissLoadingMask":
         return _platformCallbacksHandler.dismissLoadingMask();
     }
@@ -74,6 +95,38 @@ class MethodChannelWebViewPlatform implements WebViewPlatformController {
     );
   }
 
+  // Handles a batch of bridge calls and replies with the `results` and the `errors` of the calls
+  // that JavaScript waits on, both keyed by callback id. A failed call is reported to Flutter and
+  // replies its error code and message so the rest of the batch still completes.
+  Future<Map<String, dynamic>> _onJsBridgeCalls(List<dynamic> calls) async {
+    final Map<int, dynamic> results = <int, dynamic>{};
+    final Map<int, Map<String, String?>> errors = <int, Map<String, String?>>{};
+    await Future.wait(calls.map((dynamic bridgeCall) async {
+      final int? callbackId = bridgeCall['callbackId'];
+      try {
+        final dynamic result = await _platformCallbacksHandler
+            .onJsBridgeCall(MethodCall(bridgeCall['handlerName'], bridgeCall['data']));
+        if (callbackId != null) {
+          results[callbackId] = result;
+        }
+      } catch (error, stack) {
+        FlutterError.reportError(FlutterErrorDetails(
+          exception: error,
+          stack: stack,
+          library: 'webview_flutter',
+          context: ErrorDescription(
+              'while handling the JavaScript bridge call ${bridgeCall['handlerName']}'),
+        ));
+        if (callbackId != null) {
+          errors[callbackId] = error is PlatformException
+              ? <String, String?>{'code': error.code, 'message': error.message}
+              : <String, String?>{'code': 'error', 'message': error.toString()};
+        }
+      }
+    }));
+    return <String, dynamic>{'results': results, 'errors': errors};
+  }
+
   @override
   Future<void> loadUrl(
     String url,
@@ -173,6 +226,72 @@ class MethodChannelWebViewPlatform implements WebViewPlatformController {
     return _channel.invokeMethod("callHandler", params);
   }
 
+  @override
+  Future<Object?> callHandlerWithData(String handlerName, Object? data, {Duration? timeout}) {
+    return _channel.invokeMethod<Object?>("callHandlerWithData", <String, dynamic>{
+      'handlerName': handlerName,
+      'data': data,
+      if (timeout != null) 'timeoutMillis': timeout.inMilliseconds,
+    });
+  }
+
+  @override
+  Future<Map<String, dynamic>> getJavascriptChannelStats() => _channel
+      .invokeMapMethod<String, dynamic>("getJavascriptChannelStats")
+      .then((result) => result!);
+
+  @override
+  Future<void> sendBinaryMessage(ByteData message) async {
+    // the platform replies null when no page is connected to the channel
+    final ByteData? reply = await _binaryChannel.send(message);
+    if (reply == null) {
+      throw PlatformException(
+        code: 'noPageConnected',
+        message: 'The current page has not posted to the binary channel yet.',
+      );
+    }
+  }
+
+  @override
+  void setBinaryMessageHandler(void Function(ByteData message)? handler) {
+    if (handler == null) {
+      _binaryChannel.setMessageHandler(null);
+      return;
+    }
+    _binaryChannel.setMessageHandler((ByteData? message) async {
+      if (message != null) {
+        handler(message);
+      }
+      return null;
+    });
+  }
+
+  @override
+  Future<void> setNavigationRules(List<NavigationRule> rules) {
+    return _channel.invokeMethod<void>('setNavigationRules',
+        rules.map(_navigationRuleToMap).toList());
+  }
+
+  @override
+  Future<Map<String, dynamic>> getNavigationRuleStats() => _channel
+      .invokeMapMethod<String, dynamic>("getNavigationRuleStats")
+      .then((result) => result!);
+
+  @override
+  Future<void> setLifecycleOverride(WebViewLifecycleOverride override) {
+    return _channel.invokeMethod<void>('setLifecycleOverride', override.index);
+  }
+
+  @override
+  Future<Map<String, dynamic>> getLifecycleStats() => _channel
+      .invokeMapMethod<String, dynamic>("getLifecycleStats")
+      .then((result) => result!);
+
+  @override
+  Future<Map<String, dynamic>> getBridgeStats() => _channel
+      .invokeMapMethod<String, dynamic>("getBridgeStats")
+      .then((result) => result!);
+
   /// Method channel mplementation for [WebViewPlatform.clearCookies].
   static Future<bool> clearCookies() {
     return _cookieManagerChannel
@@ -180,6 +299,51 @@ class MethodChannelWebViewPlatform implements WebViewPlatformController {
         .then<bool>((dynamic result) => result!);
   }
 
+  /// Method channel implementation for [WebViewPlatform.getWebViewPoolStats].
+  static Future<Map<String, dynamic>> getWebViewPoolStats() {
+    return _webViewPoolChannel
+        .invokeMapMethod<String, dynamic>('getStats')
+        .then((result) => result!);
+  }
+
+  /// Method channel implementation for [WebViewPlatform.getMemoryPressureStats].
+  static Future<Map<String, dynamic>> getMemoryPressureStats() {
+    return _webViewMemoryChannel
+        .invokeMapMethod<String, dynamic>('getStats')
+        .then((result) => result!);
+  }
+
+  /// Method channel implementation for [WebViewPlatform.preload].
+  static Future<bool> preload(String url,
+      {Map<String, String>? headers,
+      String? userAgent,
+      required bool usesHybridComposition}) {
+    return _webViewPoolChannel.invokeMethod<bool>('preload', <String, dynamic>{
+      'url': url,
+      'headers': headers,
+      'userAgent': userAgent,
+      'usesHybridComposition': usesHybridComposition,
+    }).then<bool>((dynamic result) => result!);
+  }
+
+  /// Method channel implementation for [WebViewPlatform.setPreloadLimits].
+  static Future<void> setPreloadLimits({int? maxEntries, Duration? ttl}) {
+    return _webViewPoolChannel.invokeMethod<void>('setPreloadLimits', <String, dynamic>{
+      'maxEntries': maxEntries,
+      'ttlMillis': ttl?.inMilliseconds,
+    });
+  }
+
+  static Map<String, dynamic> _navigationRuleToMap(NavigationRule rule) {
+    return <String, dynamic>{
+      'decision':
+          rule.decision == NavigationDecision.navigate ? 'allow' : 'deny',
+      'schemes': rule.schemes,
+      'hostSuffixes': rule.hostSuffixes,
+      'pathPrefixes': rule.pathPrefixes,
+    };
+  }
+
   static Map<String, dynamic> _webSettingsToMap(WebSettings? settings) {
     final Map<String, dynamic> map = <String, dynamic>{};
     void _addIfNonNull(String key, dynamic value) {
@@ -223,6 +387,7 @@ class MethodChannelWebViewPlatform implements WebViewPlatformController {
       'userAgent': creationParams.userAgent,
       'autoMediaPlaybackPolicy': creationParams.autoMediaPlaybackPolicy.index,
       'usesHybridComposition': usesHybridComposition,
+      'platformOptions': creationParams.platformOptions,
     };
   }
 }
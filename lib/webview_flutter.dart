@@ -129,6 +129,11 @@ class SurfaceAndroidWebView extends AndroidWebView {
       },
     );
   }
+
+  @override
+  Future<bool> preload(String url, {Map<String, String>? headers, String? userAgent}) =>
+      MethodChannelWebViewPlatform.preload(url,
+          headers: headers, userAgent: userAgent, usesHybridComposition: true);
 }
 
 /// Decides how to handle a specific navigation request.
@@ -234,6 +239,7 @@ class WebView extends StatefulWidget {
     this.initialMediaPlaybackPolicy =
         AutoMediaPlaybackPolicy.require_user_action_for_all_media_types,
     this.allowsInlineMediaPlayback = false,
+    this.platformOptions = const <String, dynamic>{},
   })  : assert(javascriptMode != null),
         assert(initialMediaPlaybackPolicy != null),
         assert(allowsInlineMediaPlayback != null),
@@ -276,6 +282,70 @@ class WebView extends StatefulWidget {
 
   final Function? dismissLoadingMask;
 
+  /// Platform specific options that are applied once when the web view is created.
+  ///
+  /// Unknown keys are rejected by the platform. Supported keys on Android:
+  ///
+  ///  - `bridgeMessageBatching` (bool): deliver all bridge messages sent to JavaScript during one
+  ///    frame in a single script evaluation.
+  ///  - `bridgeDocumentStartInjection` (bool): install the JavaScript bridge at document start and
+  ///    deliver calls queued during the page load once the bridge reports ready. Ignored on
+  ///    WebView versions without document start script support.
+  ///  - `bridgeChunkThreshold` (int): bridge messages longer than this many characters are sent
+  ///    in chunks of that size, spread over several frames. 0 disables chunking.
+  ///  - `bridgeMaxInFlightChars` (int): the most characters of chunked bridge messages that may be
+  ///    in flight at once, larger messages are dropped.
+  ///  - `bridgeMessagePortTransport` (bool): deliver bridge messages to JavaScript over a web
+  ///    message channel instead of evaluating a script per message. Ignored on WebView versions
+  ///    without web message channel support.
+  ///  - `bridgeCallBatching` (bool): forward the calls of handlers added with
+  ///    [WebViewController.registerHandler] that JavaScript makes during one frame to Dart in a
+  ///    single platform channel message. [onJsBridgeCall] then receives a [MethodCall] whose
+  ///    method is the handler name and whose arguments are the data JavaScript passed. When it
+  ///    throws, the error is reported to [FlutterError.onError] and the JavaScript response
+  ///    callback receives null data and a `{code, message}` error as its second argument.
+  ///  - `javascriptChannelBatching` (bool): deliver the messages posted to [javascriptChannels]
+  ///    during one frame to Dart together, in the order they were posted within each channel.
+  ///  - `javascriptChannelLimits` (Map): per channel name, a map with the `capacity` (int) of
+  ///    messages that may wait for delivery and the `overflowPolicy` applied when it is reached:
+  ///    `dropOldest` (the default), `dropNewest` or `coalesceLatest`, which keeps only the newest
+  ///    message. See [WebViewController.getJavascriptChannelStats] for the counters.
+  ///  - `javascriptChannelMultiplexing` (bool): serve all [javascriptChannels] through a single
+  ///    JavaScript interface and a shim that creates the channel objects, so channels added or
+  ///    removed later take effect in the current page without a reload. Ignored on WebView
+  ///    versions without document start script support.
+  ///  - `javascriptBinaryChannel` (String): expose an object with this name to the page whose
+  ///    `postMessage` takes an `ArrayBuffer` and passes the bytes to the handler set with
+  ///    [WebViewController.setBinaryMessageHandler] without converting them to a string. Buffers
+  ///    sent with [WebViewController.sendBinaryMessage] arrive in the object's `onmessage` once
+  ///    the page has posted a message. On WebView versions that cannot post array buffers both
+  ///    directions use base64 strings instead. Ignored on WebView versions without web message
+  ///    listener support.
+  ///  - `progressThrottling` (Map): send [onProgress] updates at most once per frame, only when
+  ///    the progress moved by at least `minDelta` (int) and `minIntervalMillis` (int) passed since
+  ///    the previous update. 100 is always reported. Repeated values are never reported, with or
+  ///    without this option.
+  ///  - `navigationDecisionCache` (Map): remember the [navigationDelegate]'s decisions for main
+  ///    frame URLs for `ttlMillis` (int), keeping at most `maxEntries` (int) of the most recently
+  ///    used URLs. While a decision is remembered navigations to the same URL, ignoring its
+  ///    fragment, are decided without calling the delegate, and allowed ones load right away.
+  ///    Only [NavigationDecision.navigate] is remembered unless `cacheDenials` (bool) is true, a
+  ///    [NavigationDecision.prevent] then also blocks the URL until it expires.
+  ///    The hit and miss counts are part of [WebViewController.getNavigationRuleStats].
+  ///  - `recycleOnDispose` (bool): when the [WebView] is disposed, reset the platform web view and
+  ///    keep it for a later [WebView] with the same composition mode and [javascriptMode] instead
+  ///    of destroying it. The reset loads about:blank, clears the history, removes JavaScript
+  ///    channels, bridge handlers and pending callbacks and restores the default settings. Kept
+  ///    web views are released when the system runs low on memory. See [WebViewPool.getStats].
+  ///  - `pauseWhenHidden` (Map): pause the platform web view once it has been detached or hidden
+  ///    for `graceMillis` (int), and resume it when it is shown again. JavaScript timers are paused
+  ///    while every web view is paused. A [WebView] whose route is covered stays attached with
+  ///    virtual display composition, use [WebViewController.setLifecycleOverride] to pause it.
+  ///    See [WebViewController.getLifecycleStats] for the savings.
+  ///
+  /// Changes to this parameter are ignored (as long as the state of the [WebView] is preserved).
+  final Map<String, dynamic> platformOptions;
+
   /// If not null invoked once the web view is created.
   final WebViewCreatedCallback? onWebViewCreated;
 
@@ -486,6 +556,7 @@ CreationParams _creationParamsfromWidget(WebView widget) {
     javascriptChannelNames: _extractChannelNames(widget.javascriptChannels),
     userAgent: widget.userAgent,
     autoMediaPlaybackPolicy: widget.initialMediaPlaybackPolicy,
+    platformOptions: widget.platformOptions,
   );
 }
 
@@ -835,6 +906,117 @@ class WebViewController {
       {required Map<String, dynamic> params}) async {
     return _webViewPlatformController.callHandler(handlerName, params: params);
   }
+
+  /// Calls the JavaScript bridge handler `handlerName` with `data` and completes with its response.
+  ///
+  /// See [WebViewPlatformController.callHandlerWithData].
+  Future<Object?> callHandlerWithData(String handlerName, Object? data, {Duration? timeout}) {
+    return _webViewPlatformController.callHandlerWithData(handlerName, data, timeout: timeout);
+  }
+
+  /// Returns the queue counters of this WebView's JavaScript channels, by channel name.
+  ///
+  /// See [WebViewPlatformController.getJavascriptChannelStats].
+  Future<Map<String, dynamic>> getJavascriptChannelStats() {
+    return _webViewPlatformController.getJavascriptChannelStats();
+  }
+
+  /// Replaces the rules that decide navigations natively before the navigation delegate is asked.
+  ///
+  /// See [WebViewPlatformController.setNavigationRules].
+  Future<void> setNavigationRules(List<NavigationRule> rules) {
+    return _webViewPlatformController.setNavigationRules(rules);
+  }
+
+  /// Returns how many navigations each navigation rule decided.
+  ///
+  /// See [WebViewPlatformController.getNavigationRuleStats].
+  Future<Map<String, dynamic>> getNavigationRuleStats() {
+    return _webViewPlatformController.getNavigationRuleStats();
+  }
+
+  /// Sends `message` to the page over the binary channel.
+  ///
+  /// See [WebViewPlatformController.sendBinaryMessage].
+  Future<void> sendBinaryMessage(ByteData message) {
+    return _webViewPlatformController.sendBinaryMessage(message);
+  }
+
+  /// Sets the handler that receives the messages the page posts over the binary channel.
+  ///
+  /// See [WebViewPlatformController.setBinaryMessageHandler].
+  void setBinaryMessageHandler(void Function(ByteData message)? handler) {
+    _webViewPlatformController.setBinaryMessageHandler(handler);
+  }
+
+  /// Keeps this WebView resumed or paused, or lets it follow its visibility again.
+  ///
+  /// See [WebViewPlatformController.setLifecycleOverride].
+  Future<void> setLifecycleOverride(WebViewLifecycleOverride override) {
+    return _webViewPlatformController.setLifecycleOverride(override);
+  }
+
+  /// Returns the pause counters of this WebView and the time JavaScript timers were paused.
+  ///
+  /// See [WebViewPlatformController.getLifecycleStats] for what they hold.
+  Future<Map<String, dynamic>> getLifecycleStats() {
+    return _webViewPlatformController.getLifecycleStats();
+  }
+
+  /// Returns a snapshot of the JavaScript bridge metrics of this WebView.
+  ///
+  /// See [WebViewPlatformController.getBridgeStats] for what the snapshot holds.
+  Future<Map<String, dynamic>> getBridgeStats() {
+    return _webViewPlatformController.getBridgeStats();
+  }
+}
+
+/// Reports on the web views the platform creates ahead of time.
+///
+/// On Android the pool is enabled from the host app with
+/// `WebViewFlutterPlugin.setWebViewPoolSize` before the plugin is registered.
+class WebViewPool {
+  /// Creates a [WebViewPool] -- returns the instance if it's already been called.
+  factory WebViewPool() {
+    return _instance ??= WebViewPool._();
+  }
+
+  WebViewPool._();
+
+  static WebViewPool? _instance;
+
+  /// Returns the pool counters.
+  ///
+  /// See [WebViewPlatform.getWebViewPoolStats] for what they hold.
+  Future<Map<String, dynamic>> getStats() => WebView.platform.getWebViewPoolStats();
+
+  /// Returns what the plugin released, pooled web views included, when memory ran low.
+  ///
+  /// See [WebViewPlatform.getMemoryPressureStats] for what the map holds.
+  Future<Map<String, dynamic>> getMemoryPressureStats() =>
+      WebView.platform.getMemoryPressureStats();
+
+  /// Starts loading `url` off screen so that a [WebView] created later with `url` as its
+  /// [WebView.initialUrl] shows the page without loading it again.
+  ///
+  /// The page is loaded with JavaScript forced on, with `userAgent` or the default user agent, and
+  /// without a [WebView.navigationDelegate], [WebView.javascriptChannels], bridge handlers or
+  /// platform options. Bridge handlers registered later are still called by the page, but a
+  /// [WebView] that needs a different [WebView.javascriptMode] or [WebView.userAgent], or that has
+  /// JavaScript channels, channel multiplexing or a binary channel, loads the page again in the
+  /// preloaded web view instead of taking the loaded page over. The [WebView] that takes the page
+  /// over still receives [WebView.onPageStarted] and [WebView.onPageFinished] for it, but the
+  /// navigation delegate is never asked about it. Must be called with the [WebView.platform] that
+  /// will show the page, preloaded pages are kept for [WebView]s of that composition mode only.
+  Future<bool> preload(String url, {Map<String, String>? headers, String? userAgent}) {
+    _validateUrlString(url);
+    return WebView.platform.preload(url, headers: headers, userAgent: userAgent);
+  }
+
+  /// Limits how many pages are preloaded at once, 2 by default, and how long a preloaded page is
+  /// kept, 5 minutes by default.
+  Future<void> setPreloadLimits({int? maxEntries, Duration? ttl}) =>
+      WebView.platform.setPreloadLimits(maxEntries: maxEntries, ttl: ttl);
 }
 
 /// Manages cookies pertaining to all [WebView]s.
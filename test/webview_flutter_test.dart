@@ -2,6 +2,7 @@
 // Use of this source code is governed by a BSD-style license that can be
 // found in the LICENSE file.
 
+import 'dart:async';
 import 'dart:math';
 import 'dart:typed_data';
 
@@ -577,6 +578,115 @@ void main() {
     expect(ttsMessagesReceived, <String>['Hello', 'World']);
   });
 
+  testWidgets('Batched JavaScript channel messages',
+      (WidgetTester tester) async {
+    final List<String> messagesReceived = <String>[];
+    await tester.pumpWidget(
+      WebView(
+        initialUrl: 'https://youtube.com',
+        javascriptChannels: <JavascriptChannel>{
+          JavascriptChannel(
+              name: 'Tts',
+              onMessageReceived: (JavascriptMessage msg) {
+                messagesReceived.add('Tts:${msg.message}');
+              }),
+          JavascriptChannel(
+              name: 'Alarm',
+              onMessageReceived: (JavascriptMessage msg) {
+                messagesReceived.add('Alarm:${msg.message}');
+              }),
+        },
+      ),
+    );
+
+    final FakePlatformWebView platformWebView =
+        fakePlatformViewsController.lastCreatedView!;
+
+    platformWebView.fakeJavascriptChannelMessages(
+      <String>['Alarm', 'Tts'],
+      <dynamic>[1, 'Hello', 0, 'Wake up', 1, 'World'],
+    );
+
+    expect(messagesReceived,
+        <String>['Tts:Hello', 'Alarm:Wake up', 'Tts:World']);
+  });
+
+  group('onJsBridgeCall', () {
+    testWidgets('Batched calls reply with their results by callback id',
+        (WidgetTester tester) async {
+      final List<MethodCall> calls = <MethodCall>[];
+      await tester.pumpWidget(
+        WebView(
+          initialUrl: 'https://youtube.com',
+          onJsBridgeCall: (MethodCall call) async {
+            calls.add(call);
+            return '${call.method}:${call.arguments}';
+          },
+        ),
+      );
+
+      final FakePlatformWebView platformWebView =
+          fakePlatformViewsController.lastCreatedView!;
+
+      final dynamic reply = await platformWebView
+          .fakeJsBridgeCalls(<Map<String, dynamic>>[
+        <String, dynamic>{'handlerName': 'echo', 'data': 'a', 'callbackId': 1},
+        <String, dynamic>{'handlerName': 'log', 'data': 'b'},
+        <String, dynamic>{'handlerName': 'echo', 'data': 'c', 'callbackId': 2},
+      ]);
+
+      expect(calls.map((MethodCall call) => call.method),
+          <String>['echo', 'log', 'echo']);
+      expect(calls.map((MethodCall call) => call.arguments),
+          <String>['a', 'b', 'c']);
+      expect(reply, <String, dynamic>{
+        'results': <int, dynamic>{1: 'echo:a', 2: 'echo:c'},
+        'errors': <int, dynamic>{},
+      });
+    });
+
+    testWidgets('A failed call replies its error and is reported',
+        (WidgetTester tester) async {
+      final List<FlutterErrorDetails> reported = <FlutterErrorDetails>[];
+      await tester.pumpWidget(
+        WebView(
+          initialUrl: 'https://youtube.com',
+          onJsBridgeCall: (MethodCall call) async {
+            if (call.method == 'denied') {
+              throw PlatformException(code: 'denied', message: 'Not allowed');
+            }
+            return call.arguments;
+          },
+        ),
+      );
+
+      final FakePlatformWebView platformWebView =
+          fakePlatformViewsController.lastCreatedView!;
+
+      final FlutterExceptionHandler? onError = FlutterError.onError;
+      FlutterError.onError = reported.add;
+      final dynamic reply;
+      try {
+        reply = await platformWebView
+            .fakeJsBridgeCalls(<Map<String, dynamic>>[
+          <String, dynamic>{'handlerName': 'ok', 'data': 'a', 'callbackId': 1},
+          <String, dynamic>{'handlerName': 'denied', 'callbackId': 2},
+        ]);
+      } finally {
+        FlutterError.onError = onError;
+      }
+
+      expect(reply, <String, dynamic>{
+        'results': <int, dynamic>{1: 'a'},
+        'errors': <int, dynamic>{
+          2: <String, dynamic>{'code': 'denied', 'message': 'Not allowed'},
+        },
+      });
+      expect(reported, hasLength(1));
+      expect(reported[0].exception, isA<PlatformException>());
+    });
+  });
+
   group('$PageStartedCallback', () {
     testWidgets('onPageStarted is not null', (WidgetTester tester) async {
       String? returnedUrl;
@@ -797,6 +907,46 @@ void main() {
       await tester.pump();
       expect(platformWebView.currentUrl, 'https://flutter.dev');
     });
+
+    testWidgets('Navigation rules', (WidgetTester tester) async {
+      late WebViewController controller;
+      await tester.pumpWidget(
+        WebView(
+          initialUrl: 'https://youtube.com',
+          onWebViewCreated: (WebViewController webViewController) {
+            controller = webViewController;
+          },
+        ),
+      );
+
+      final FakePlatformWebView platformWebView =
+          fakePlatformViewsController.lastCreatedView!;
+
+      await controller.setNavigationRules(const <NavigationRule>[
+        NavigationRule(
+          decision: NavigationDecision.navigate,
+          schemes: <String>['https'],
+          hostSuffixes: <String>['flutter.dev'],
+          pathPrefixes: <String>['/docs'],
+        ),
+        NavigationRule(decision: NavigationDecision.prevent),
+      ]);
+
+      expect(platformWebView.navigationRules, <dynamic>[
+        <String, dynamic>{
+          'decision': 'allow',
+          'schemes': <String>['https'],
+          'hostSuffixes': <String>['flutter.dev'],
+          'pathPrefixes': <String>['/docs'],
+        },
+        <String, dynamic>{
+          'decision': 'deny',
+          'schemes': <String>[],
+          'hostSuffixes': <String>[],
+          'pathPrefixes': <String>[],
+        },
+      ]);
+    });
   });
 
   group('debuggingEnabled', () {
@@ -959,6 +1109,7 @@ class FakePlatformWebView {
   bool? hasNavigationDelegate;
   bool? debuggingEnabled;
   String? userAgent;
+  List<dynamic>? navigationRules;
 
   Future<dynamic> onMethodCall(MethodCall call) {
     switch (call.method) {
@@ -1007,6 +1158,9 @@ class FakePlatformWebView {
       case 'clearCache':
         hasCache = false;
         return Future<void>.sync(() {});
+      case 'setNavigationRules':
+        navigationRules = call.arguments;
+        return Future<void>.sync(() {});
     }
     return Future<void>.sync(() {});
   }
@@ -1023,6 +1177,34 @@ class FakePlatformWebView {
         .handlePlatformMessage(channel.name, data, (ByteData? data) {});
   }
 
+  // Fakes a batch of messages, `messages` holds pairs of an index into
+  // `channels` and a message.
+  void fakeJavascriptChannelMessages(
+      List<String> channels, List<dynamic> messages) {
+    final StandardMethodCodec codec = const StandardMethodCodec();
+    final Map<String, dynamic> arguments = <String, dynamic>{
+      'channels': channels,
+      'messages': messages
+    };
+    final ByteData data = codec
+        .encodeMethodCall(MethodCall('javascriptChannelMessages', arguments));
+    ServicesBinding.instance!.defaultBinaryMessenger
+        .handlePlatformMessage(channel.name, data, (ByteData? data) {});
+  }
+
+  // Fakes a batch of bridge calls and completes with the reply from Dart.
+  Future<dynamic> fakeJsBridgeCalls(List<Map<String, dynamic>> calls) {
+    final StandardMethodCodec codec = const StandardMethodCodec();
+    final Completer<dynamic> reply = Completer<dynamic>();
+    final ByteData data =
+        codec.encodeMethodCall(MethodCall('onJsBridgeCalls', calls));
+    ServicesBinding.instance!.defaultBinaryMessenger
+        .handlePlatformMessage(channel.name, data, (ByteData? data) {
+      reply.complete(codec.decodeEnvelope(data!));
+    });
+    return reply.future;
+  }
+
   // Fakes a main frame navigation that was initiated by the webview, e.g when
   // the user clicks a link in the currently loaded page.
   void fakeNavigate(String url) {
@@ -1182,6 +1364,26 @@ class MyWebViewPlatform implements WebViewPlatform {
   Future<bool> clearCookies() {
     return Future<bool>.sync(() => true);
   }
+
+  @override
+  Future<Map<String, dynamic>> getWebViewPoolStats() {
+    return Future<Map<String, dynamic>>.sync(() => <String, dynamic>{});
+  }
+
+  @override
+  Future<Map<String, dynamic>> getMemoryPressureStats() {
+    return Future<Map<String, dynamic>>.sync(() => <String, dynamic>{});
+  }
+
+  @override
+  Future<bool> preload(String url, {Map<String, String>? headers, String? userAgent}) {
+    return Future<bool>.sync(() => false);
+  }
+
+  @override
+  Future<void> setPreloadLimits({int? maxEntries, Duration? ttl}) {
+    return Future<void>.sync(() {});
+  }
 }
 
 class MyWebViewPlatformController extends WebViewPlatformController {